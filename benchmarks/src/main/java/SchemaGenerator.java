@@ -0,0 +1,78 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Seeded generator of synthetic schemas for benchmarking.
+ * Attributes A0 .. A(n-1) are split into chainDepth + 1 consecutive layers, and every FD derives an
+ * attribute of the next layer from 1 to lhsWidth attributes of one layer. The first chainDepth FDs link the
+ * layers in order, so a closure from the first layer needs at least chainDepth FD applications.
+ * With a chain depth of 0 the FDs are drawn from all attributes. The same seed always gives the same schema.
+ */
+public class SchemaGenerator {
+    private final long seed;
+
+    public SchemaGenerator(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * @param attributes number of attributes of the relation
+     * @param fdCount number of FDs to generate
+     * @param lhsWidth largest number of attributes on the left side of an FD
+     * @param chainDepth length of the longest derivation chain, capped at attributes - 1
+     */
+    public Schema generate(int attributes, int fdCount, int lhsWidth, int chainDepth) {
+        if (attributes < 2 || fdCount < 0 || lhsWidth < 1 || chainDepth < 0) {
+            throw new IllegalArgumentException("Invalid schema shape: attributes=" + attributes + ", fds=" + fdCount
+                    + ", lhsWidth=" + lhsWidth + ", chainDepth=" + chainDepth);
+        }
+        Random random = new Random(seed);
+        List<String> names = new ArrayList<>(attributes);
+        for (int i = 0; i < attributes; i++) {
+            names.add("A" + i);
+        }
+        AttributeUniverse universe = AttributeUniverse.of(names);
+        Relation relation = new Relation("R", universe, universe.all());
+
+        //Step 1: split the attributes into layers [start[l], start[l+1])
+        int layers = Math.min(chainDepth, attributes - 1) + 1;
+        int[] start = new int[layers + 1];
+        for (int l = 0; l <= layers; l++) {
+            start[l] = l * attributes / layers;
+        }
+
+        //Step 2: draw the FDs, the chain first
+        List<FunctionalDependency> fds = new ArrayList<>(fdCount);
+        for (int i = 0; i < fdCount; i++) {
+            AttributeSet left = AttributeSet.empty(attributes);
+            AttributeSet right = AttributeSet.empty(attributes);
+            if (layers == 1) {
+                addRandom(random, left, 0, attributes, 1 + random.nextInt(lhsWidth));
+                int rhs = random.nextInt(attributes);
+                while (left.contains(rhs) && left.cardinality() < attributes) {
+                    rhs = random.nextInt(attributes);
+                }
+                right.add(rhs);
+            } else {
+                int layer = i < layers - 1 ? i : random.nextInt(layers - 1);
+                if (i < layers - 1) {
+                    left.add(start[layer]);
+                } else {
+                    addRandom(random, left, start[layer], start[layer + 1], 1 + random.nextInt(lhsWidth));
+                }
+                right.add(i < layers - 1 ? start[layer + 1] : start[layer + 1] + random.nextInt(start[layer + 2] - start[layer + 1]));
+            }
+            fds.add(new FunctionalDependency(universe, left, right));
+        }
+        return new Schema(relation, fds);
+    }
+
+    // Adds 'count' distinct ids from [from, to) to 'set', or all of them if the range is smaller
+    private static void addRandom(Random random, AttributeSet set, int from, int to, int count) {
+        int target = Math.min(count, to - from);
+        while (set.cardinality() < target) {
+            set.add(from + random.nextInt(to - from));
+        }
+    }
+}
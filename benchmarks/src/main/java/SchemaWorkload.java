@@ -0,0 +1,58 @@
+import benchmarks.Workload;
+
+import java.util.List;
+
+/**
+ * {@link Workload} over one schema from {@link SchemaGenerator}.
+ * The closure benchmark starts from the left side of the first FD, the start of the longest chain.
+ */
+public class SchemaWorkload implements Workload {
+    private final Relation relation;
+    private final List<FunctionalDependency> fds;
+    private final AttributeSet closureStart;
+
+    public SchemaWorkload(long seed, int attributes, int fdCount, int lhsWidth, int chainDepth, boolean cached) {
+        Schema schema = new SchemaGenerator(seed).generate(attributes, fdCount, lhsWidth, chainDepth);
+        this.relation = schema.getRelation();
+        this.fds = schema.getFunctionalDependencies();
+        this.closureStart = fds.isEmpty()
+                ? AttributeSet.of(0)
+                : fds.getFirst().getLeftSet(relation.getUniverse());
+        ClosureCache.setShared(new ClosureCache(cached ? ClosureCache.DEFAULT_MAX_SIZE : 0));
+    }
+
+    @Override
+    public Object closure() {
+        return RelationKeyUtils.getClosureFromAttributes(relation.getUniverse(), closureStart, fds);
+    }
+
+    @Override
+    public Object candidateKeys() {
+        return RelationKeyUtils.getCandidateKeys(relation, fds);
+    }
+
+    @Override
+    public Object minimalBasis() {
+        return ThirdNFUtils.getMinimalBasis(fds);
+    }
+
+    @Override
+    public boolean isInBCNF() {
+        return BCNFUtils.isInBCNF(relation, fds);
+    }
+
+    @Override
+    public boolean isIn3NF() {
+        return ThirdNFUtils.isIn3NF(relation, fds);
+    }
+
+    @Override
+    public Object decomposeIntoBCNF() {
+        return BCNFUtils.decomposeRelationIntoBCNF(relation, fds);
+    }
+
+    @Override
+    public Object decomposeInto3NF() {
+        return ThirdNFUtils.decomposeRelationInto3NF(relation, fds);
+    }
+}
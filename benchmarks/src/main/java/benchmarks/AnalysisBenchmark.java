@@ -0,0 +1,98 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the closure, key, minimal basis, normal form and decomposition algorithms on
+ * schemas from {@code SchemaGenerator}. Every parameter combination is a separate seeded schema,
+ * so results are comparable between runs and commits.
+ * <p>
+ * Build with {@code mvn -pl benchmarks -am package} and run {@code java -jar benchmarks/target/benchmarks.jar};
+ * {@link BenchmarkRunner} adds the gc profiler, so allocation rate is reported next to throughput.
+ * Standard JMH options work as usual, e.g. {@code -p attributes=32 -p chainDepth=8 closure}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AnalysisBenchmark {
+
+    @Param({"8", "16", "24"})
+    public int attributes;
+
+    @Param({"12", "48"})
+    public int fds;
+
+    // Largest number of attributes on the left side of a generated FD
+    @Param({"2"})
+    public int lhsWidth;
+
+    // Number of FD applications needed to reach the end of the longest derivation chain
+    @Param({"4"})
+    public int chainDepth;
+
+    @Param({"42"})
+    public long seed;
+
+    // Whether the shared closure cache stays on; off by default so repeated calls measure real work
+    @Param({"false"})
+    public boolean cached;
+
+    private Workload workload;
+
+    @Setup
+    public void setUp() throws ReflectiveOperationException {
+        workload = (Workload) Class.forName("SchemaWorkload")
+                .getConstructor(long.class, int.class, int.class, int.class, int.class, boolean.class)
+                .newInstance(seed, attributes, fds, lhsWidth, chainDepth, cached);
+    }
+
+    @Benchmark
+    public Object closure() {
+        return workload.closure();
+    }
+
+    @Benchmark
+    public Object candidateKeys() {
+        return workload.candidateKeys();
+    }
+
+    @Benchmark
+    public Object minimalBasis() {
+        return workload.minimalBasis();
+    }
+
+    @Benchmark
+    public boolean isInBCNF() {
+        return workload.isInBCNF();
+    }
+
+    @Benchmark
+    public boolean isIn3NF() {
+        return workload.isIn3NF();
+    }
+
+    @Benchmark
+    public Object decomposeIntoBCNF() {
+        return workload.decomposeIntoBCNF();
+    }
+
+    @Benchmark
+    public Object decomposeInto3NF() {
+        return workload.decomposeInto3NF();
+    }
+}
@@ -0,0 +1,23 @@
+package benchmarks;
+
+/**
+ * Operations measured by {@link AnalysisBenchmark} on one generated schema.
+ * The calculator lives in the default package, which JMH benchmark classes can't import, so the
+ * implementation ({@code SchemaWorkload}) sits next to it and is loaded by name once per trial.
+ */
+public interface Workload {
+
+    Object closure();
+
+    Object candidateKeys();
+
+    Object minimalBasis();
+
+    boolean isInBCNF();
+
+    boolean isIn3NF();
+
+    Object decomposeIntoBCNF();
+
+    Object decomposeInto3NF();
+}
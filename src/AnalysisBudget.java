@@ -0,0 +1,114 @@
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limits how long an exponential analysis may run: a wall-clock deadline, a maximum number of attribute subsets
+ * visited, and/or a {@link CancellationToken}. Algorithms call {@link #visit()} for every subset they look at and
+ * {@link #isExhausted()} between larger steps; once either returns false or true respectively the budget stays
+ * exhausted, and the algorithm returns what it has so far as a {@link PartialResult}.
+ * <p>
+ * A budget keeps count of the subsets visited, so use a new one for every call.
+ */
+public class AnalysisBudget {
+    public enum StopReason {
+        DEADLINE,
+        SUBSET_LIMIT,
+        CANCELLED
+    }
+
+    // The clock is read once per this many visits
+    private static final int CLOCK_INTERVAL = 1 << 8;
+
+    private final long deadline;
+    private final long maxSubsets;
+    private final CancellationToken token;
+    private final AtomicLong subsets = new AtomicLong();
+    private volatile StopReason stopReason;
+
+    /**
+     * @param timeout time allowed from now on, or null for no deadline
+     * @param maxSubsets most subsets that may be visited, or {@link Long#MAX_VALUE} for no limit
+     * @param token token that stops the analysis when cancelled, or null
+     */
+    public AnalysisBudget(Duration timeout, long maxSubsets, CancellationToken token) {
+        this.deadline = timeout == null ? Long.MAX_VALUE : System.nanoTime() + timeout.toNanos();
+        this.maxSubsets = maxSubsets;
+        this.token = token;
+    }
+
+    public static AnalysisBudget unlimited() {
+        return new AnalysisBudget(null, Long.MAX_VALUE, null);
+    }
+
+    public static AnalysisBudget withTimeout(Duration timeout) {
+        return new AnalysisBudget(timeout, Long.MAX_VALUE, null);
+    }
+
+    public static AnalysisBudget withMaxSubsets(long maxSubsets) {
+        return new AnalysisBudget(null, maxSubsets, null);
+    }
+
+    public static AnalysisBudget withToken(CancellationToken token) {
+        return new AnalysisBudget(null, Long.MAX_VALUE, token);
+    }
+
+    /**
+     * Counts one visited subset.
+     * @return true if the subset may be processed, false once the budget is exhausted
+     */
+    public boolean visit() {
+        if (stopReason != null) {
+            return false;
+        }
+        long count = subsets.incrementAndGet();
+        if (count > maxSubsets) {
+            stop(StopReason.SUBSET_LIMIT);
+            return false;
+        }
+        return count % CLOCK_INTERVAL != 0 || !isExhausted();
+    }
+
+    /**
+     * Checks the deadline and the cancellation token.
+     * @return true if the analysis should stop
+     */
+    public boolean isExhausted() {
+        if (stopReason != null) {
+            return true;
+        }
+        if (token != null && token.isCancelled()) {
+            stop(StopReason.CANCELLED);
+        } else if (deadline != Long.MAX_VALUE && System.nanoTime() - deadline >= 0) {
+            stop(StopReason.DEADLINE);
+        }
+        return stopReason != null;
+    }
+
+    private void stop(StopReason reason) {
+        if (stopReason == null) {
+            stopReason = reason;
+        }
+    }
+
+    /**
+     * Number of subsets visited so far, including the one that exhausted the limit.
+     */
+    public long getSubsetsVisited() {
+        return subsets.get();
+    }
+
+    /**
+     * Why the budget ran out, or null if it hasn't.
+     */
+    public StopReason getStopReason() {
+        return stopReason;
+    }
+
+    /**
+     * Wraps 'value' as complete, or as incomplete if the budget ran out while computing it.
+     */
+    public <T> PartialResult<T> result(T value) {
+        StopReason reason = stopReason;
+        return reason == null ? PartialResult.complete(value) : PartialResult.incomplete(value, reason);
+    }
+}
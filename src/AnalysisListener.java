@@ -0,0 +1,62 @@
+/**
+ * Receives counters and phase timings from the closure engine and the key, normal form and decomposition algorithms.
+ * Every method does nothing by default, and {@link #NONE} is installed unless {@link #setShared} says otherwise,
+ * so an uninstrumented run costs one empty, inlinable call per event. Subclasses override what they record,
+ * e.g. {@link MetricsRecorder} or {@link JfrAnalysisListener}. Implementations must be thread safe, since
+ * parallel and fork/join variants report from several threads.
+ * <p>
+ * Engines pick up the shared listener when they are prepared; the algorithms pick it up when they are called.
+ */
+public class AnalysisListener {
+    public static final AnalysisListener NONE = new AnalysisListener();
+
+    private static volatile AnalysisListener shared = NONE;
+
+    public static AnalysisListener shared() {
+        return shared;
+    }
+
+    /**
+     * Installs 'listener' for all subsequent analyses; null restores {@link #NONE}.
+     */
+    public static void setShared(AnalysisListener listener) {
+        shared = listener == null ? NONE : listener;
+    }
+
+    /**
+     * A closure was computed.
+     * @param depth fixpoint depth (see {@link ClosureEngine#closure(AttributeSet)}), or 0 on the single-word path, which doesn't track it
+     * @param fdScans number of FD counter updates, i.e. how often an FD was looked at because one of its left side attributes was reached
+     */
+    public void closureComputed(int depth, int fdScans) {
+    }
+
+    /**
+     * A closure was served from the {@link ClosureCache}.
+     */
+    public void closureCacheHit() {
+    }
+
+    /**
+     * 'count' more attribute subsets were enumerated.
+     */
+    public void subsetsVisited(long count) {
+    }
+
+    /**
+     * A decomposition started working on a sub-relation 'depth' splits below the original relation (which is depth 1).
+     */
+    public void recursionEntered(int depth) {
+    }
+
+    /**
+     * Called when 'phase' starts.
+     * @return a token handed back to {@link #phaseFinished}, typically {@link System#nanoTime()}
+     */
+    public long phaseStarted(AnalysisPhase phase) {
+        return 0;
+    }
+
+    public void phaseFinished(AnalysisPhase phase, long start) {
+    }
+}
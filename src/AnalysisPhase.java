@@ -0,0 +1,19 @@
+/**
+ * Phases of the analysis algorithms timed through {@link AnalysisListener}.
+ * Phases nest, e.g. a 3NF decomposition includes a minimal basis and a candidate key search, and each is timed inclusively.
+ */
+public enum AnalysisPhase {
+    CLOSURE_TABLE,
+    SUPER_KEYS,
+    CANDIDATE_KEYS,
+    MINIMAL_BASIS,
+    BCNF_CHECK,
+    THIRD_NF_CHECK,
+    BCNF_DECOMPOSITION,
+    BCNF_PROJECTION,
+    THIRD_NF_DECOMPOSITION,
+    DECOMPOSITION_CHECK,
+    FD_DISCOVERY,
+    SESSION_UPDATE,
+    IMPLICATION_CHECK
+}
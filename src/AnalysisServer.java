@@ -0,0 +1,367 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Long-running HTTP service answering the same questions as the mains of {@link RelationKeyUtils},
+ * {@link BCNFUtils} and {@link ThirdNFUtils}, so callers don't pay JVM startup and a cold JIT per schema.
+ * <p>
+ * Every endpoint takes a "schema" parameter in the {@link SchemaParser#parseSchema} format, e.g.
+ * "R(A,B,C,D); AB->C, C->D", from the query string or a form-encoded POST body; any other POST body is taken as
+ * the schema itself. Answers are JSON:
+ * <ul>
+ *   <li>/keys: {"candidateKeys":[["A","B"],...]}</li>
+ *   <li>/normal-form: {"normalForm":"3NF","bcnf":false,"thirdNF":true}</li>
+ *   <li>/minimal-basis: {"minimalBasis":[{"left":["A"],"right":["B"]},...]}</li>
+ *   <li>/decompose/3nf and /decompose/bcnf: {"relations":[{"name":"R_1","attributes":[...]},...],
+ *   "lossless":true,"dependencyPreserving":false,"lostDependencies":[...]}</li>
+ *   <li>/stats: computations run, requests coalesced and requests in flight</li>
+ * </ul>
+ * Bad schemas get status 400 and {"error":"..."}, bodies over {@value #MAX_BODY_BYTES} bytes get 413.
+ * <p>
+ * Each computation runs under an {@link AnalysisBudget} with the server's timeout, which {@link #stop(int)} also
+ * cancels. When it runs out, /keys and /decompose/bcnf answer with what they found so far and
+ * "complete":false,"stopReason":"DEADLINE" (or "CANCELLED"); /normal-form answers 503.
+ * <p>
+ * Each request runs on its own virtual thread. Requests for the same endpoint and the same schema, up to the order
+ * of FDs and attributes and the way right sides are split (see {@link SchemaFingerprint}), that arrive while one
+ * is being computed wait for that computation instead of starting their own. Where several answers are valid, as
+ * for minimal bases and decompositions, they all get the answer of the first request. Endpoints that search
+ * subsets (all but /minimal-basis) run at most 'maxConcurrent' computations at a time; further ones wait for a
+ * permit, coalesced requests don't take one.
+ */
+public class AnalysisServer {
+    private static final Set<String> EXPENSIVE = Set.of("/keys", "/normal-form", "/decompose/3nf", "/decompose/bcnf");
+    public static final int MAX_BODY_BYTES = 1 << 20;
+    public static final Duration DEFAULT_TIMEOUT = Duration.ofSeconds(30);
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final Semaphore permits;
+    private final Duration timeout;
+    private final CancellationToken stopping = new CancellationToken();
+    private final Map<String, CompletableFuture<PartialResult<String>>> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder computations = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+
+    /**
+     * @param address where to listen; use a loopback address, requests are not authenticated
+     * @param maxConcurrent most subset-searching computations running at once
+     */
+    public AnalysisServer(InetSocketAddress address, int maxConcurrent) throws IOException {
+        this(address, maxConcurrent, DEFAULT_TIMEOUT);
+    }
+
+    /**
+     * @param timeout time each computation may take once it has a permit
+     */
+    public AnalysisServer(InetSocketAddress address, int maxConcurrent, Duration timeout) throws IOException {
+        if (maxConcurrent < 1) {
+            throw new IllegalArgumentException("At least one concurrent computation is needed, got " + maxConcurrent);
+        }
+        this.permits = new Semaphore(maxConcurrent, true);
+        this.timeout = timeout;
+        this.executor = Executors.newVirtualThreadPerTaskExecutor();
+        this.server = HttpServer.create(address, 0);
+        server.setExecutor(executor);
+    }
+
+    /**
+     * Usage: AnalysisServer [port] [maxConcurrent] [timeoutSeconds]
+     * Listens on localhost, port 8080, one computation per processor and {@link #DEFAULT_TIMEOUT} by default.
+     */
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 8080;
+        int maxConcurrent = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        Duration timeout = args.length > 2 ? Duration.ofSeconds(Long.parseLong(args[2])) : DEFAULT_TIMEOUT;
+        AnalysisServer server = new AnalysisServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), port),
+                maxConcurrent, timeout);
+        server.start();
+        System.err.println("Listening on http://localhost:" + server.getPort() + "/");
+    }
+
+    public void start() {
+        server.createContext("/", this::handle);
+        server.start();
+    }
+
+    /**
+     * Stops accepting requests and cancels running computations, which then answer with what they have.
+     * Waits up to 'delaySeconds' for open exchanges to finish, then stops.
+     */
+    public void stop(int delaySeconds) {
+        stopping.cancel();
+        server.stop(delaySeconds);
+        executor.shutdownNow();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public long getComputations() {
+        return computations.sum();
+    }
+
+    public long getCoalesced() {
+        return coalesced.sum();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            String path = exchange.getRequestURI().getPath();
+            String method = exchange.getRequestMethod();
+            if (!method.equals("GET") && !method.equals("POST")) {
+                respond(exchange, 405, error("Use GET or POST"));
+                return;
+            }
+            if (path.equals("/stats")) {
+                respond(exchange, 200, "{\"computations\":" + getComputations() + ",\"coalesced\":" + getCoalesced()
+                        + ",\"inFlight\":" + inFlight.size() + "}");
+                return;
+            }
+            if (!EXPENSIVE.contains(path) && !path.equals("/minimal-basis")) {
+                respond(exchange, 404, error("Unknown endpoint " + path));
+                return;
+            }
+
+            //Step 1: read and parse the schema
+            Schema schema;
+            try {
+                byte[] body = readBody(exchange);
+                if (body == null) {
+                    respond(exchange, 413, error("Request body is larger than " + MAX_BODY_BYTES + " bytes"));
+                    return;
+                }
+                String text = readSchema(exchange, body);
+                if (text == null) {
+                    respond(exchange, 400, error("Missing schema parameter"));
+                    return;
+                }
+                schema = SchemaParser.parseSchema(text);
+            } catch (IllegalArgumentException e) {
+                respond(exchange, 400, error(e.getMessage()));
+                return;
+            }
+
+            //Step 2: join a computation of the same schema, or start one
+            try {
+                PartialResult<String> result = compute(path, schema);
+                if (result.getValue() == null) {
+                    respond(exchange, 503, error("Analysis stopped early: " + result.getStopReason()));
+                } else {
+                    respond(exchange, 200, result.getValue());
+                }
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                respond(exchange, cause instanceof IllegalArgumentException ? 400 : 500, error(String.valueOf(cause.getMessage())));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                respond(exchange, 503, error("Server is stopping"));
+            }
+        }
+    }
+
+    private PartialResult<String> compute(String path, Schema schema) throws ExecutionException, InterruptedException {
+        Relation relation = schema.getRelation();
+        SchemaFingerprint fingerprint = SchemaFingerprint.of(relation, schema.getFunctionalDependencies());
+        // Same canonical schema and the same names at each canonical position give the same answer
+        StringBuilder key = new StringBuilder(path).append('|').append(fingerprint.getHash())
+                .append('|').append(relation.getName());
+        for (int i = 0; i < fingerprint.getAttributeCount(); i++) {
+            key.append(',').append(fingerprint.nameOf(i));
+        }
+        CompletableFuture<PartialResult<String>> created = new CompletableFuture<>();
+        CompletableFuture<PartialResult<String>> running = inFlight.putIfAbsent(key.toString(), created);
+        if (running != null) {
+            coalesced.increment();
+            return running.get();
+        }
+        try {
+            computations.increment();
+            boolean expensive = EXPENSIVE.contains(path);
+            if (expensive) {
+                permits.acquire();
+            }
+            try {
+                AnalysisBudget budget = new AnalysisBudget(timeout, Long.MAX_VALUE, stopping);
+                created.complete(answer(path, relation, schema.getFunctionalDependencies(), budget));
+            } finally {
+                if (expensive) {
+                    permits.release();
+                }
+            }
+        } catch (Throwable e) {
+            // Waiting requests get the failure too, rather than waiting forever
+            created.completeExceptionally(e);
+        } finally {
+            inFlight.remove(key.toString(), created);
+        }
+        return created.get();
+    }
+
+    // The JSON answer, or an incomplete result without a value if the budget ran out before there was anything to say
+    private static PartialResult<String> answer(String path, Relation relation, List<FunctionalDependency> fds, AnalysisBudget budget) {
+        return switch (path) {
+            case "/keys" -> {
+                PartialResult<List<Set<String>>> keys = RelationKeyUtils.getCandidateKeys(relation, fds, budget);
+                yield close(new StringBuilder("{\"candidateKeys\":").append(sets(keys.getValue())), keys);
+            }
+            case "/normal-form" -> {
+                boolean bcnf = BCNFUtils.isInBCNF(relation, fds);
+                PartialResult<Boolean> thirdNF = bcnf ? PartialResult.complete(true) : ThirdNFUtils.isIn3NF(relation, fds, budget);
+                if (!thirdNF.isComplete()) {
+                    yield PartialResult.incomplete(null, thirdNF.getStopReason());
+                }
+                yield PartialResult.complete("{\"normalForm\":" + string(bcnf ? "BCNF" : thirdNF.getValue() ? "3NF" : "none")
+                        + ",\"bcnf\":" + bcnf + ",\"thirdNF\":" + thirdNF.getValue() + "}");
+            }
+            case "/minimal-basis" -> PartialResult.complete(
+                    "{\"minimalBasis\":" + fds(ThirdNFUtils.getMinimalBasis(relation.getUniverse(), fds)) + "}");
+            case "/decompose/3nf" -> PartialResult.complete(
+                    decomposition(relation, fds, ThirdNFUtils.decomposeRelationInto3NF(relation, fds)).append('}').toString());
+            case "/decompose/bcnf" -> {
+                PartialResult<List<Relation>> relations = BCNFUtils.decomposeRelationIntoBCNF(relation, fds, budget);
+                yield close(decomposition(relation, fds, relations.getValue()), relations);
+            }
+            default -> throw new IllegalArgumentException("Unknown endpoint " + path);
+        };
+    }
+
+    // Closes the JSON object 'json', marking it as incomplete if 'result' is
+    private static PartialResult<String> close(StringBuilder json, PartialResult<?> result) {
+        if (result.isComplete()) {
+            return PartialResult.complete(json.append('}').toString());
+        }
+        json.append(",\"complete\":false,\"stopReason\":").append(string(result.getStopReason().name())).append('}');
+        return PartialResult.incomplete(json.toString(), result.getStopReason());
+    }
+
+    // The decomposition and its report as a JSON object that is still open
+    private static StringBuilder decomposition(Relation relation, List<FunctionalDependency> fds, List<Relation> relations) {
+        DecompositionReport report = DecompositionVerifier.verify(relation, fds, relations);
+        StringBuilder json = new StringBuilder("{\"relations\":[");
+        for (int i = 0; i < relations.size(); i++) {
+            Relation part = relations.get(i);
+            json.append(i == 0 ? "" : ",").append("{\"name\":").append(string(part.getName()))
+                    .append(",\"attributes\":").append(names(part.getAttributes())).append('}');
+        }
+        return json.append("],\"lossless\":").append(report.isLossless())
+                .append(",\"dependencyPreserving\":").append(report.isDependencyPreserving())
+                .append(",\"lostDependencies\":").append(fds(report.getLostDependencies()));
+    }
+
+    // The body of a POST, or null if it is longer than MAX_BODY_BYTES; empty for other methods
+    private static byte[] readBody(HttpExchange exchange) throws IOException {
+        if (!exchange.getRequestMethod().equals("POST")) {
+            return new byte[0];
+        }
+        try (InputStream in = exchange.getRequestBody()) {
+            byte[] body = in.readNBytes(MAX_BODY_BYTES + 1);
+            return body.length > MAX_BODY_BYTES ? null : body;
+        }
+    }
+
+    // The schema from the query string or a form body, or the whole body if it isn't a form; null if there is none
+    private static String readSchema(HttpExchange exchange, byte[] content) {
+        String query = exchange.getRequestURI().getRawQuery();
+        String schema = query != null ? parameters(query).get("schema") : null;
+        if (schema != null || !exchange.getRequestMethod().equals("POST")) {
+            return schema;
+        }
+        String body = new String(content, StandardCharsets.UTF_8);
+        String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+        if (contentType != null && contentType.startsWith("application/x-www-form-urlencoded")) {
+            return parameters(body).get("schema");
+        }
+        return body.isBlank() ? null : body;
+    }
+
+    private static Map<String, String> parameters(String encoded) {
+        Map<String, String> parameters = new HashMap<>();
+        for (String pair : encoded.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0) {
+                parameters.put(URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8),
+                        URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return parameters;
+    }
+
+    private static void respond(HttpExchange exchange, int status, String json) throws IOException {
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static String error(String message) {
+        return "{\"error\":" + string(message) + "}";
+    }
+
+    private static String fds(List<FunctionalDependency> fds) {
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < fds.size(); i++) {
+            FunctionalDependency fd = fds.get(i);
+            json.append(i == 0 ? "" : ",").append("{\"left\":").append(names(fd.getLeft()))
+                    .append(",\"right\":").append(names(fd.getRight())).append('}');
+        }
+        return json.append(']').toString();
+    }
+
+    private static String sets(List<Set<String>> sets) {
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < sets.size(); i++) {
+            json.append(i == 0 ? "" : ",").append(names(sets.get(i)));
+        }
+        return json.append(']').toString();
+    }
+
+    // Names in sorted order, so equal sets are always written the same way
+    private static String names(Collection<String> names) {
+        StringBuilder json = new StringBuilder("[");
+        for (String name : new TreeSet<>(names)) {
+            json.append(json.length() == 1 ? "" : ",").append(string(name));
+        }
+        return json.append(']').toString();
+    }
+
+    private static String string(String text) {
+        StringBuilder json = new StringBuilder(text.length() + 2).append('"');
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '"' || c == '\\') {
+                json.append('\\').append(c);
+            } else if (c < 0x20) {
+                json.append(String.format("\\u%04x", (int) c));
+            } else {
+                json.append(c);
+            }
+        }
+        return json.append('"').toString();
+    }
+}
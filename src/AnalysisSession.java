@@ -0,0 +1,350 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Analysis of one relation while its FDs are edited one at a time, e.g. in a schema design tool.
+ * The closure index, candidate keys, prime attributes and normal form are kept up to date after every
+ * {@link #addFunctionalDependency} and {@link #removeFunctionalDependency}, and each edit returns a
+ * {@link SessionDiff} of what changed.
+ * <p>
+ * Edits only redo the work they can affect:
+ * <ul>
+ *   <li>An FD that the other FDs already imply changes no closure, so keys and prime attributes stay as they are.</li>
+ *   <li>Adding X -> Y keeps every key a super key. Each key is shrunk back to a key, and the Lucchesi-Osborn step
+ *   (see {@link RelationKeyUtils#findCandidateKeys}) is applied to keys that didn't shrink with the new FD only,
+ *   and to new keys with every FD.</li>
+ *   <li>Removing X -> Y switches it off in the closure engine in O(1). Keys that are still super keys are still keys;
+ *   only if some key was lost is the Lucchesi-Osborn search continued from the keys that are left.</li>
+ * </ul>
+ * The normal form is then checked against the keys, without taking closures.
+ * If some FD has a left side outside the relation, keys are recomputed with
+ * {@link RelationKeyUtils#getSuperKeySet(Relation, List)} after every edit instead.
+ * <p>
+ * A session is not thread-safe.
+ */
+public class AnalysisSession {
+    private final Relation relation;
+    // Private copy of the relation's universe, which grows by the attributes added FDs reach outside the relation
+    private final AttributeUniverse universe;
+    private final AttributeSet attributes;
+    // FDs the engine was prepared with; removed FDs stay switched off in their slot until the engine is rebuilt
+    private List<FunctionalDependency> slots;
+    private ClosureEngine engine;
+    private int disabled;
+    private SuperKeySet keys;
+    private String normalForm;
+    // Computed on first use after an edit
+    private List<FunctionalDependency> minimalBasis;
+
+    public AnalysisSession(Relation relation) {
+        this(relation, List.of());
+    }
+
+    public AnalysisSession(Relation relation, List<FunctionalDependency> fds) {
+        this.relation = relation;
+        this.universe = relation.getUniverse().copy();
+        this.attributes = relation.getAttributeSet();
+        this.slots = new ArrayList<>(new LinkedHashSet<>(fds));
+        slots.forEach(this::internAttributes);
+        this.engine = ClosureEngine.prepare(universe, slots, null);
+        this.keys = RelationKeyUtils.getSuperKeySet(relation, engine);
+        this.normalForm = computeNormalForm();
+    }
+
+    /**
+     * Adds 'fd' and updates the analysis. Adding an FD the session already has changes nothing.
+     */
+    public SessionDiff addFunctionalDependency(FunctionalDependency fd) {
+        AnalysisListener listener = AnalysisListener.shared();
+        long start = listener.phaseStarted(AnalysisPhase.SESSION_UPDATE);
+        try {
+            SuperKeySet before = keys;
+            String normalFormBefore = normalForm;
+            int slot = slots.indexOf(fd);
+            if (slot >= 0 && engine.isEnabled(slot)) {
+                return diff(fd, true, before, normalFormBefore);
+            }
+
+            //Step 1: check whether the FD is new information, then put it in the closure index
+            internAttributes(fd);
+            boolean implied = engine.closureOf(fd.getLeftSet(universe)).containsAll(fd.getRightSet(universe));
+            if (slot >= 0) {
+                engine.setEnabled(slot, true);
+                disabled--;
+            } else {
+                List<FunctionalDependency> active = activeFunctionalDependencies();
+                slots = new ArrayList<>(active.size() + 1);
+                slots.addAll(active);
+                slots.add(fd);
+                engine = ClosureEngine.prepare(universe, slots, null);
+                disabled = 0;
+            }
+
+            //Step 2: update the keys, then the normal form
+            if (!implied) {
+                keys = isOverRelation() ? keysAfterAdd(fd) : RelationKeyUtils.getSuperKeySet(relation, activeFunctionalDependencies());
+            }
+            normalForm = computeNormalForm();
+            minimalBasis = null;
+            return diff(fd, true, before, normalFormBefore);
+        } finally {
+            listener.phaseFinished(AnalysisPhase.SESSION_UPDATE, start);
+        }
+    }
+
+    /**
+     * Removes 'fd' and updates the analysis. Removing an FD the session doesn't have changes nothing.
+     */
+    public SessionDiff removeFunctionalDependency(FunctionalDependency fd) {
+        AnalysisListener listener = AnalysisListener.shared();
+        long start = listener.phaseStarted(AnalysisPhase.SESSION_UPDATE);
+        try {
+            SuperKeySet before = keys;
+            String normalFormBefore = normalForm;
+            int slot = slots.indexOf(fd);
+            if (slot < 0 || !engine.isEnabled(slot)) {
+                return diff(fd, false, before, normalFormBefore);
+            }
+
+            //Step 1: switch the FD off, and check whether the remaining FDs still imply it
+            engine.setEnabled(slot, false);
+            disabled++;
+            boolean implied = engine.closureOf(fd.getLeftSet(universe)).containsAll(fd.getRightSet(universe));
+
+            //Step 2: update the keys, then the normal form
+            if (!implied) {
+                keys = isOverRelation() ? keysAfterRemove() : RelationKeyUtils.getSuperKeySet(relation, activeFunctionalDependencies());
+            }
+            normalForm = computeNormalForm();
+            minimalBasis = null;
+
+            //Step 3: rebuild the engine once most of its slots are switched off
+            if (2 * disabled > slots.size()) {
+                slots = activeFunctionalDependencies();
+                engine = ClosureEngine.prepare(universe, slots, null);
+                disabled = 0;
+            }
+            return diff(fd, false, before, normalFormBefore);
+        } finally {
+            listener.phaseFinished(AnalysisPhase.SESSION_UPDATE, start);
+        }
+    }
+
+    // After adding 'added': every old key is still a super key, so shrink each to a key and continue Lucchesi-Osborn
+    private SuperKeySet keysAfterAdd(FunctionalDependency added) {
+        SuperKeySet found = new SuperKeySet(relation);
+        // Keys that were keys before only need the step with the new FD; any other FD already led to a known key
+        Set<AttributeSet> unchanged = new HashSet<>();
+        for (AttributeSet key : keys.getCandidateKeys()) {
+            AttributeSet shrunk = minimizeKey(key);
+            if (!found.isSuperKey(shrunk)) {
+                found.add(shrunk);
+                if (shrunk.equals(key)) {
+                    unchanged.add(shrunk);
+                }
+            }
+        }
+        List<FunctionalDependency> active = activeFunctionalDependencies();
+        List<AttributeSet> list = found.getCandidateKeys();
+        for (int i = 0; i < list.size(); i++) {
+            AttributeSet key = list.get(i);
+            for (FunctionalDependency fd : unchanged.contains(key) ? List.of(added) : active) {
+                lucchesiOsbornStep(found, key, fd);
+            }
+        }
+        return found;
+    }
+
+    // After removing an FD: keys that are still super keys are still keys; continue Lucchesi-Osborn from them
+    private SuperKeySet keysAfterRemove() {
+        SuperKeySet found = new SuperKeySet(relation);
+        for (AttributeSet key : keys.getCandidateKeys()) {
+            if (engine.closureOf(key).containsAll(attributes)) {
+                found.add(key);
+            }
+        }
+        if (found.getCandidateKeys().size() == keys.getCandidateKeys().size()) {
+            // Every new key would contain an old one, so nothing changed
+            return keys;
+        }
+        if (found.getCandidateKeys().isEmpty()) {
+            found.add(minimizeKey(attributes));
+        }
+        List<FunctionalDependency> active = activeFunctionalDependencies();
+        List<AttributeSet> list = found.getCandidateKeys();
+        for (int i = 0; i < list.size(); i++) {
+            AttributeSet key = list.get(i);
+            for (FunctionalDependency fd : active) {
+                lucchesiOsbornStep(found, key, fd);
+            }
+        }
+        return found;
+    }
+
+    // For key K and X -> Y, X u (K \ Y) is a super key; if it contains no known key it leads to a new one
+    private void lucchesiOsbornStep(SuperKeySet found, AttributeSet key, FunctionalDependency fd) {
+        AttributeSet superKey = key.difference(fd.getRightSet(universe));
+        superKey.addAll(fd.getLeftSet(universe));
+        superKey.retainAll(attributes);
+        if (!found.isSuperKey(superKey)) {
+            found.add(minimizeKey(superKey));
+        }
+    }
+
+    private AttributeSet minimizeKey(AttributeSet superKey) {
+        AttributeSet key = superKey.copy();
+        for (int a = superKey.nextSetBit(0); a >= 0; a = superKey.nextSetBit(a + 1)) {
+            key.remove(a);
+            if (!engine.closureOf(key).containsAll(attributes)) {
+                key.add(a);
+            }
+        }
+        return key;
+    }
+
+    private boolean isOverRelation() {
+        for (FunctionalDependency fd : activeFunctionalDependencies()) {
+            if (!attributes.containsAll(fd.getLeftSet(universe))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Same checks as BCNFUtils.isInBCNF and ThirdNFUtils.isIn3NF, with super keys and primes taken from the keys
+    private String computeNormalForm() {
+        boolean bcnf = true;
+        for (FunctionalDependency fd : activeFunctionalDependencies()) {
+            AttributeSet left = fd.getLeftSet(universe);
+            if (!attributes.containsAll(left) || BCNFUtils.isTrivialIn(relation, universe, fd) || keys.isSuperKey(left)) {
+                continue;
+            }
+            bcnf = false;
+            AttributeSet nonKeyAttributes = fd.getRightSet(universe).intersection(attributes);
+            nonKeyAttributes.removeAll(left);
+            if (!keys.getPrimeAttributes().containsAll(nonKeyAttributes)) {
+                return "none";
+            }
+        }
+        return bcnf ? "BCNF" : "3NF";
+    }
+
+    private SessionDiff diff(FunctionalDependency fd, boolean added, SuperKeySet before, String normalFormBefore) {
+        Set<AttributeSet> oldKeys = new HashSet<>(before.getCandidateKeys());
+        Set<AttributeSet> newKeys = new HashSet<>(keys.getCandidateKeys());
+        List<Set<String>> addedKeys = new ArrayList<>();
+        for (AttributeSet key : sorted(keys.getCandidateKeys())) {
+            if (!oldKeys.contains(key)) {
+                addedKeys.add(universe.toNames(key));
+            }
+        }
+        List<Set<String>> removedKeys = new ArrayList<>();
+        for (AttributeSet key : sorted(before.getCandidateKeys())) {
+            if (!newKeys.contains(key)) {
+                removedKeys.add(universe.toNames(key));
+            }
+        }
+        AttributeSet oldPrime = before.getPrimeAttributes();
+        AttributeSet newPrime = keys.getPrimeAttributes();
+        return new SessionDiff(fd, added, addedKeys, removedKeys,
+                universe.toNames(newPrime.difference(oldPrime)), universe.toNames(oldPrime.difference(newPrime)),
+                normalFormBefore, normalForm);
+    }
+
+    private static List<AttributeSet> sorted(List<AttributeSet> keys) {
+        List<AttributeSet> result = new ArrayList<>(keys);
+        result.sort(AttributeSet.BY_SIZE);
+        return result;
+    }
+
+    public Relation getRelation() {
+        return relation;
+    }
+
+    /**
+     * Returns the FDs currently in the session, in the order they were added.
+     */
+    public List<FunctionalDependency> getFunctionalDependencies() {
+        return activeFunctionalDependencies();
+    }
+
+    private List<FunctionalDependency> activeFunctionalDependencies() {
+        List<FunctionalDependency> active = new ArrayList<>(slots.size() - disabled);
+        for (int i = 0; i < slots.size(); i++) {
+            if (engine.isEnabled(i)) {
+                active.add(slots.get(i));
+            }
+        }
+        return active;
+    }
+
+    /**
+     * Returns the candidate keys, smallest first.
+     */
+    public List<Set<String>> getCandidateKeys() {
+        List<Set<String>> names = new ArrayList<>();
+        for (AttributeSet key : sorted(keys.getCandidateKeys())) {
+            names.add(universe.toNames(key));
+        }
+        return names;
+    }
+
+    public SuperKeySet getSuperKeySet() {
+        return keys;
+    }
+
+    public Set<String> getPrimeAttributes() {
+        return universe.toNames(keys.getPrimeAttributes());
+    }
+
+    /**
+     * "BCNF", "3NF" or "none", as in {@link SchemaAnalysis#getNormalForm()}.
+     */
+    public String getNormalForm() {
+        return normalForm;
+    }
+
+    public boolean isInBCNF() {
+        return normalForm.equals("BCNF");
+    }
+
+    public boolean isIn3NF() {
+        return !normalForm.equals("none");
+    }
+
+    /**
+     * Returns a minimal basis of the current FDs. It is computed on first use after an edit.
+     */
+    public List<FunctionalDependency> getMinimalBasis() {
+        if (minimalBasis == null) {
+            minimalBasis = Collections.unmodifiableList(ThirdNFUtils.getMinimalBasis(universe, activeFunctionalDependencies()));
+        }
+        return minimalBasis;
+    }
+
+    private void internAttributes(FunctionalDependency fd) {
+        universe.toAttributeSet(fd.getLeft());
+        universe.toAttributeSet(fd.getRight());
+    }
+
+    /**
+     * Returns the closure of 'attributes' under the current FDs.
+     */
+    public Set<String> closureOf(Set<String> attributes) {
+        return universe.toNames(engine.closureOf(universe.toAttributeSet(attributes)));
+    }
+
+    @Override
+    public String toString() {
+        return "AnalysisSession{" +
+                "relation=" + relation.getName() +
+                ", fds=" + getFunctionalDependencies() +
+                ", keys=" + getCandidateKeys() +
+                ", normalForm=" + normalForm +
+                '}';
+    }
+}
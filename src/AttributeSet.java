@@ -0,0 +1,312 @@
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Set of attribute ids from an {@link AttributeUniverse}, stored as bits.
+ * Sets over at most 64 attributes live in a single long; wider sets switch to a long[] of words.
+ * Subset, union and equality checks are a handful of word-wide bit operations and don't allocate.
+ */
+public class AttributeSet {
+    /**
+     * Orders smaller sets first, and sets of equal size by their lowest differing id.
+     */
+    public static final Comparator<AttributeSet> BY_SIZE = Comparator
+            .comparingInt(AttributeSet::cardinality)
+            .thenComparing(AttributeSet::compareIds);
+
+    // Bits 0..63 while 'wide' is null
+    private long small;
+    // Backing words once the set grows past 64 attributes
+    private long[] wide;
+
+    private AttributeSet(long small, long[] wide) {
+        this.small = small;
+        this.wide = wide;
+    }
+
+    public static AttributeSet empty() {
+        return new AttributeSet(0L, null);
+    }
+
+    /**
+     * Creates an empty set sized for ids below 'capacity'.
+     */
+    public static AttributeSet empty(int capacity) {
+        return capacity <= 64 ? empty() : new AttributeSet(0L, new long[(capacity + 63) >>> 6]);
+    }
+
+    /**
+     * Creates a set from a bit mask over the first 64 ids.
+     */
+    public static AttributeSet ofMask(long mask) {
+        return new AttributeSet(mask, null);
+    }
+
+    public static AttributeSet of(int... ids) {
+        AttributeSet set = empty();
+        for (int id : ids) {
+            set.add(id);
+        }
+        return set;
+    }
+
+    private int wordCount() {
+        return wide == null ? 1 : wide.length;
+    }
+
+    private long word(int i) {
+        if (wide == null) {
+            return i == 0 ? small : 0L;
+        }
+        return i < wide.length ? wide[i] : 0L;
+    }
+
+    private void ensureWords(int count) {
+        if (count <= wordCount()) {
+            return;
+        }
+        if (wide == null) {
+            wide = new long[count];
+            wide[0] = small;
+            small = 0L;
+        } else {
+            wide = Arrays.copyOf(wide, count);
+        }
+    }
+
+    public boolean add(int id) {
+        ensureWords((id >>> 6) + 1);
+        long bit = 1L << id;
+        if (wide == null) {
+            boolean added = (small & bit) == 0;
+            small |= bit;
+            return added;
+        }
+        boolean added = (wide[id >>> 6] & bit) == 0;
+        wide[id >>> 6] |= bit;
+        return added;
+    }
+
+    public boolean remove(int id) {
+        long bit = 1L << id;
+        if (wide == null) {
+            if (id >= 64) return false;
+            boolean removed = (small & bit) != 0;
+            small &= ~bit;
+            return removed;
+        }
+        if ((id >>> 6) >= wide.length) return false;
+        boolean removed = (wide[id >>> 6] & bit) != 0;
+        wide[id >>> 6] &= ~bit;
+        return removed;
+    }
+
+    public boolean contains(int id) {
+        return (word(id >>> 6) & (1L << id)) != 0;
+    }
+
+    /**
+     * Returns true if every id in 'other' is also in this set.
+     */
+    public boolean containsAll(AttributeSet other) {
+        if (wide == null && other.wide == null) {
+            return (other.small & ~small) == 0;
+        }
+        for (int i = 0; i < other.wordCount(); i++) {
+            if ((other.word(i) & ~word(i)) != 0) return false;
+        }
+        return true;
+    }
+
+    public boolean intersects(AttributeSet other) {
+        if (wide == null && other.wide == null) {
+            return (other.small & small) != 0;
+        }
+        int n = Math.min(wordCount(), other.wordCount());
+        for (int i = 0; i < n; i++) {
+            if ((other.word(i) & word(i)) != 0) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Adds every id in 'other' to this set.
+     * @return true if this set changed
+     */
+    public boolean addAll(AttributeSet other) {
+        if (wide == null && other.wide == null) {
+            long before = small;
+            small |= other.small;
+            return small != before;
+        }
+        ensureWords(other.wordCount());
+        boolean changed = false;
+        for (int i = 0; i < other.wordCount(); i++) {
+            long before = word(i);
+            long after = before | other.word(i);
+            if (after != before) {
+                setWord(i, after);
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    public boolean retainAll(AttributeSet other) {
+        boolean changed = false;
+        for (int i = 0; i < wordCount(); i++) {
+            long before = word(i);
+            long after = before & other.word(i);
+            if (after != before) {
+                setWord(i, after);
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    public boolean removeAll(AttributeSet other) {
+        boolean changed = false;
+        for (int i = 0; i < wordCount(); i++) {
+            long before = word(i);
+            long after = before & ~other.word(i);
+            if (after != before) {
+                setWord(i, after);
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    private void setWord(int i, long value) {
+        if (wide == null) {
+            small = value;
+        } else {
+            wide[i] = value;
+        }
+    }
+
+    public AttributeSet union(AttributeSet other) {
+        AttributeSet result = copy();
+        result.addAll(other);
+        return result;
+    }
+
+    public AttributeSet intersection(AttributeSet other) {
+        AttributeSet result = copy();
+        result.retainAll(other);
+        return result;
+    }
+
+    public AttributeSet difference(AttributeSet other) {
+        AttributeSet result = copy();
+        result.removeAll(other);
+        return result;
+    }
+
+    public AttributeSet copy() {
+        return new AttributeSet(small, wide == null ? null : wide.clone());
+    }
+
+    public int cardinality() {
+        int count = 0;
+        for (int i = 0; i < wordCount(); i++) {
+            count += Long.bitCount(word(i));
+        }
+        return count;
+    }
+
+    public boolean isEmpty() {
+        for (int i = 0; i < wordCount(); i++) {
+            if (word(i) != 0) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the first id at or after 'from' that is in this set, or -1 if there is none.
+     */
+    public int nextSetBit(int from) {
+        int i = from >>> 6;
+        if (i >= wordCount()) return -1;
+        long w = word(i) & (-1L << from);
+        while (true) {
+            if (w != 0) return (i << 6) + Long.numberOfTrailingZeros(w);
+            if (++i >= wordCount()) return -1;
+            w = word(i);
+        }
+    }
+
+    /**
+     * Returns the ids in this set in increasing order.
+     */
+    public int[] toArray() {
+        int[] ids = new int[cardinality()];
+        int k = 0;
+        for (int i = nextSetBit(0); i >= 0; i = nextSetBit(i + 1)) {
+            ids[k++] = i;
+        }
+        return ids;
+    }
+
+    /**
+     * Returns this set as a single-word mask.
+     * @throws IllegalStateException if the set holds an id of 64 or above
+     */
+    public long toMask() {
+        for (int i = 1; i < wordCount(); i++) {
+            if (word(i) != 0) throw new IllegalStateException("Attribute set does not fit in 64 bits: " + this);
+        }
+        return word(0);
+    }
+
+    private static int compareIds(AttributeSet a, AttributeSet b) {
+        int i = a.nextSetBit(0);
+        int j = b.nextSetBit(0);
+        while (i >= 0 && j >= 0) {
+            if (i != j) return Integer.compare(i, j);
+            i = a.nextSetBit(i + 1);
+            j = b.nextSetBit(j + 1);
+        }
+        return Integer.compare(i >= 0 ? 1 : 0, j >= 0 ? 1 : 0);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof AttributeSet other)) return false;
+        if (wide == null && other.wide == null) return small == other.small;
+        int n = Math.max(wordCount(), other.wordCount());
+        for (int i = 0; i < n; i++) {
+            if (word(i) != other.word(i)) return false;
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        // Trailing zero words are ignored so small and wide sets with the same ids hash alike
+        int last = wordCount() - 1;
+        while (last > 0 && word(last) == 0) last--;
+        // Each word is mixed first; folding words with Long.hashCode made many subsets of one relation collide
+        long h = 0;
+        for (int i = 0; i <= last; i++) {
+            h = 31 * h + mix(word(i));
+        }
+        return (int) (h ^ (h >>> 32));
+    }
+
+    // Finalizer of MurmurHash3: every input bit affects every output bit
+    private static long mix(long word) {
+        word ^= word >>> 33;
+        word *= 0xff51afd7ed558ccdL;
+        word ^= word >>> 33;
+        word *= 0xc4ceb9fe1a85ec53L;
+        return word ^ (word >>> 33);
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(toArray());
+    }
+}
@@ -0,0 +1,68 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Attribute sets indexed for "is some stored set a superset of this one". For every attribute the index keeps the
+ * stored sets containing it, so a query only compares against the sets holding its rarest attribute, rather than
+ * against every stored set.
+ */
+public class AttributeSetIndex {
+    private final List<AttributeSet> sets = new ArrayList<>();
+    // attribute id -> positions in 'sets' of the sets containing it; only the first 'counts[id]' are in use
+    private int[][] postings = new int[0][];
+    private int[] counts = new int[0];
+
+    /**
+     * Adds 'set', which must not be modified afterwards.
+     */
+    public void add(AttributeSet set) {
+        int position = sets.size();
+        sets.add(set);
+        for (int a = set.nextSetBit(0); a >= 0; a = set.nextSetBit(a + 1)) {
+            if (a >= postings.length) {
+                int length = Math.max(a + 1, 2 * postings.length);
+                postings = Arrays.copyOf(postings, length);
+                counts = Arrays.copyOf(counts, length);
+            }
+            if (postings[a] == null) {
+                postings[a] = new int[4];
+            } else if (counts[a] == postings[a].length) {
+                postings[a] = Arrays.copyOf(postings[a], 2 * counts[a]);
+            }
+            postings[a][counts[a]++] = position;
+        }
+    }
+
+    /**
+     * Returns true if some stored set contains every attribute of 'set', including a stored set equal to it.
+     */
+    public boolean containsSuperset(AttributeSet set) {
+        //Step 1: find the attribute of 'set' that the fewest stored sets contain
+        int rarest = -1;
+        for (int a = set.nextSetBit(0); a >= 0; a = set.nextSetBit(a + 1)) {
+            if (a >= counts.length || counts[a] == 0) {
+                return false;
+            }
+            if (rarest < 0 || counts[a] < counts[rarest]) {
+                rarest = a;
+            }
+        }
+        if (rarest < 0) {
+            return !sets.isEmpty();
+        }
+
+        //Step 2: only those sets can contain all of 'set'
+        int[] candidates = postings[rarest];
+        for (int i = 0; i < counts[rarest]; i++) {
+            if (sets.get(candidates[i]).containsAll(set)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public int size() {
+        return sets.size();
+    }
+}
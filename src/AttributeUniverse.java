@@ -0,0 +1,214 @@
+import java.util.*;
+
+/**
+ * Symbol table that interns attribute names to dense integer ids.
+ * Ids are handed out in order starting from 0, so an {@link AttributeSet} over this universe
+ * can use the id directly as a bit index.
+ * <p>
+ * Names are found through an open-addressing table keyed by {@link String#hashCode()}, which can also be
+ * computed over a range of any {@link CharSequence}. That lets a parser look up a name straight from its
+ * input buffer without creating a String first.
+ */
+public class AttributeUniverse {
+    private final List<String> names = new ArrayList<>();
+    // id + 1 of the name hashed to each slot, 0 for an empty slot; the length is a power of two
+    private int[] slots = new int[16];
+
+    public AttributeUniverse() {
+    }
+
+    /**
+     * Creates a universe with the given names interned in sorted order, so the same attributes
+     * always get the same ids no matter the iteration order of the input set.
+     */
+    public static AttributeUniverse of(Collection<String> attributes) {
+        AttributeUniverse universe = new AttributeUniverse();
+        attributes.stream().sorted().forEach(universe::intern);
+        return universe;
+    }
+
+    /**
+     * Returns a universe with the same names and ids that can grow without affecting this one.
+     */
+    public AttributeUniverse copy() {
+        AttributeUniverse copy = new AttributeUniverse();
+        copy.names.addAll(names);
+        copy.slots = slots.clone();
+        return copy;
+    }
+
+    /**
+     * Returns this universe if it has every attribute 'fds' mention, or else a copy that also has the missing ones.
+     * Analyses bind FDs that reach outside a relation to such a copy, so they never grow the relation's universe,
+     * which other threads may be reading at the same time.
+     */
+    public AttributeUniverse covering(List<FunctionalDependency> fds) {
+        AttributeUniverse result = this;
+        for (FunctionalDependency fd : fds) {
+            if (!fd.isBoundTo(this)) {
+                result = covering(result, fd.getLeft());
+                result = covering(result, fd.getRight());
+            }
+        }
+        return result;
+    }
+
+    private AttributeUniverse covering(AttributeUniverse result, Collection<String> attributes) {
+        for (String attribute : attributes) {
+            if (result.idOf(attribute) < 0) {
+                if (result == this) {
+                    result = copy();
+                }
+                result.intern(attribute);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the id of 'name', assigning the next free id if it has not been seen before.
+     */
+    public int intern(String name) {
+        int id = idOf(name);
+        return id >= 0 ? id : add(name);
+    }
+
+    /**
+     * Returns the id of the name in characters [start, end) of 'text', assigning the next free id if it has
+     * not been seen before. A String is only created for a new name.
+     */
+    public int intern(CharSequence text, int start, int end) {
+        int id = idOf(text, start, end);
+        return id >= 0 ? id : add(text.subSequence(start, end).toString());
+    }
+
+    /**
+     * Returns the id of 'name', or -1 if it is not part of this universe.
+     */
+    public int idOf(String name) {
+        return idOf(name, 0, name.length());
+    }
+
+    /**
+     * Returns the id of the name in characters [start, end) of 'text', or -1 if it is not part of this universe.
+     */
+    public int idOf(CharSequence text, int start, int end) {
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + text.charAt(i);
+        }
+        int mask = slots.length - 1;
+        for (int slot = spread(hash) & mask; slots[slot] != 0; slot = (slot + 1) & mask) {
+            String name = names.get(slots[slot] - 1);
+            if (name.hashCode() == hash && regionEquals(name, text, start, end)) {
+                return slots[slot] - 1;
+            }
+        }
+        return -1;
+    }
+
+    private int add(String name) {
+        int id = names.size();
+        names.add(name);
+        if (2 * names.size() > slots.length) {
+            // Keep the table at most half full
+            slots = new int[slots.length * 2];
+            for (int i = 0; i < names.size(); i++) {
+                place(i);
+            }
+        } else {
+            place(id);
+        }
+        return id;
+    }
+
+    private void place(int id) {
+        int mask = slots.length - 1;
+        int slot = spread(names.get(id).hashCode()) & mask;
+        while (slots[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        slots[slot] = id + 1;
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    private static boolean regionEquals(String name, CharSequence text, int start, int end) {
+        if (name.length() != end - start) {
+            return false;
+        }
+        for (int i = 0; i < name.length(); i++) {
+            if (name.charAt(i) != text.charAt(start + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public String nameOf(int id) {
+        return names.get(id);
+    }
+
+    public int size() {
+        return names.size();
+    }
+
+    public List<String> getNames() {
+        return Collections.unmodifiableList(names);
+    }
+
+    /**
+     * Interns every name in 'attributes' and returns them as a bit set.
+     * Use {@link #lookup} on a universe that others may be reading.
+     */
+    public AttributeSet toAttributeSet(Collection<String> attributes) {
+        AttributeSet set = AttributeSet.empty(size() + attributes.size());
+        for (String attribute : attributes) {
+            set.add(intern(attribute));
+        }
+        return set;
+    }
+
+    /**
+     * Returns the ids of the names in 'attributes' this universe has, skipping any it doesn't. Never interns.
+     */
+    public AttributeSet lookup(Collection<String> attributes) {
+        AttributeSet set = AttributeSet.empty(size());
+        for (String attribute : attributes) {
+            int id = idOf(attribute);
+            if (id >= 0) {
+                set.add(id);
+            }
+        }
+        return set;
+    }
+
+    /**
+     * Converts a bit set over this universe back into attribute names.
+     */
+    public Set<String> toNames(AttributeSet set) {
+        Set<String> result = new HashSet<>();
+        for (int i = set.nextSetBit(0); i >= 0; i = set.nextSetBit(i + 1)) {
+            result.add(names.get(i));
+        }
+        return result;
+    }
+
+    /**
+     * Returns the set containing every attribute of this universe.
+     */
+    public AttributeSet all() {
+        AttributeSet set = AttributeSet.empty(size());
+        for (int i = 0; i < size(); i++) {
+            set.add(i);
+        }
+        return set;
+    }
+
+    @Override
+    public String toString() {
+        return names.toString();
+    }
+}
@@ -1,7 +1,12 @@
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Function;
 
 public class BCNFUtils {
 
@@ -16,7 +21,7 @@ public class BCNFUtils {
         System.out.println("Parsed Relation: " + relation);
 
         // Parse the functional dependencies
-        List<FunctionalDependency> fdList = FunctionalDependency.parseFDs(fdsStr);
+        List<FunctionalDependency> fdList = FunctionalDependency.parseFDs(fdsStr, relation.getUniverse().copy());
         System.out.println("Parsed FDs:");
         for (FunctionalDependency fd : fdList) {
             System.out.println("  " + fd);
@@ -28,14 +33,366 @@ public class BCNFUtils {
 
         List<Relation> decomposeBCNFRelations = decomposeRelationIntoBCNF(relation, fdList);
         System.out.println("Decomposed BCNF: " + decomposeBCNFRelations);
+        System.out.println("Verified: " + DecompositionVerifier.verify(relation, fdList, decomposeBCNFRelations));
 
     }
 
+    /**
+     * Decomposes 'relation' into BCNF using closures against the original FDs, without listing or projecting implied FDs.
+     * Each sub-relation is split at the first violating left side found (see {@link #splitAttributes}).
+     */
     public static List<Relation> decomposeRelationIntoBCNF(Relation relation, List<FunctionalDependency> fds) {
-        //Infer all possible FDs not included 'fds' given
-        List<FunctionalDependency> allFDs = inferAllFunctionalDependencies(relation, fds);
-        return recDecomposeRelationIntoBCNF(relation, fds, allFDs);
+        return decomposeRelationIntoBCNF(relation, fds, AnalysisBudget.unlimited()).getValue();
+    }
+
+    /**
+     * Same as {@link #decomposeRelationIntoBCNF(Relation, List)}, but stops splitting once 'budget' runs out.
+     * An incomplete result is still a lossless-join decomposition of 'relation', but the relations that weren't
+     * split yet may violate BCNF.
+     */
+    public static PartialResult<List<Relation>> decomposeRelationIntoBCNF(Relation relation, List<FunctionalDependency> fds, AnalysisBudget budget) {
+        AnalysisListener listener = AnalysisListener.shared();
+        long start = listener.phaseStarted(AnalysisPhase.BCNF_DECOMPOSITION);
+        try {
+            // Splitting takes closures of many subsets that are rarely asked for again, the shared cache costs more than it saves
+            ClosureEngine engine = ClosureEngine.prepare(relation.getUniverse(), fds, null);
+            List<Relation> result = new ArrayList<>();
+            assembleDecomposition(relation, attributes -> budget.isExhausted() ? null : splitAttributes(attributes, engine, budget),
+                    new HashSet<>(), result, 1);
+            return budget.result(removeSubsumedRelations(result));
+        } finally {
+            listener.phaseFinished(AnalysisPhase.BCNF_DECOMPOSITION, start);
+        }
+    }
+
+    /**
+     * Same as {@link #decomposeRelationIntoBCNF(Relation, List)}, but both halves of every split are decomposed as
+     * fork/join tasks on 'pool'. Each distinct sub-relation is split once, and the relations are then assembled in
+     * the same order and with the same names as the sequential version.
+     */
+    public static List<Relation> decomposeRelationIntoBCNF(Relation relation, List<FunctionalDependency> fds, ForkJoinPool pool) {
+        AnalysisListener listener = AnalysisListener.shared();
+        long start = listener.phaseStarted(AnalysisPhase.BCNF_DECOMPOSITION);
+        try {
+            ClosureEngine engine = ClosureEngine.prepare(relation.getUniverse(), fds, null);
+            Map<AttributeSet, SplitTask> splits = new ConcurrentHashMap<>();
+            SplitTask root = new SplitTask(relation.getAttributeSet(), engine, splits);
+            splits.put(relation.getAttributeSet(), root);
+            pool.invoke(root);
+
+            List<Relation> result = new ArrayList<>();
+            assembleDecomposition(relation, attributes -> splits.get(attributes).join(), new HashSet<>(), result, 1);
+            return removeSubsumedRelations(result);
+        } finally {
+            listener.phaseFinished(AnalysisPhase.BCNF_DECOMPOSITION, start);
+        }
+    }
+
+    /**
+     * Decomposes 'relation' using a closure table of all its subsets, filled up front. Faster than
+     * {@link #decomposeRelationIntoBCNF(Relation, List)} when most subsets end up being looked at anyway,
+     * but limited to {@link ClosureTable#MAX_ATTRIBUTES} attributes.
+     */
+    public static List<Relation> decomposeRelationIntoBCNF(Relation relation, List<FunctionalDependency> fds, ClosureTable table) {
+        AnalysisListener listener = AnalysisListener.shared();
+        long start = listener.phaseStarted(AnalysisPhase.BCNF_DECOMPOSITION);
+        try {
+            return recDecomposeRelationIntoBCNF(relation, fds, relation.getUniverse().covering(fds), table, 1);
+        } finally {
+            listener.phaseFinished(AnalysisPhase.BCNF_DECOMPOSITION, start);
+        }
+    }
+
+    /**
+     * Appends the BCNF decomposition of 'relation' to 'result'.
+     * Different splits often lead to the same sub-relation; one whose attributes are in 'visited' was already
+     * decomposed earlier and is skipped, since repeating its parts adds nothing to the join.
+     */
+    public static void recDecomposeRelationIntoBCNF(Relation relation, ClosureEngine engine, Set<AttributeSet> visited, List<Relation> result) {
+        assembleDecomposition(relation, attributes -> splitAttributes(attributes, engine), visited, result, 1);
+    }
+
+    private static void assembleDecomposition(Relation relation, Function<AttributeSet, AttributeSet[]> splits,
+                                              Set<AttributeSet> visited, List<Relation> result, int depth) {
+        if (!visited.add(relation.getAttributeSet())) {
+            return;
+        }
+        AnalysisListener.shared().recursionEntered(depth);
+        AttributeSet[] parts = splits.apply(relation.getAttributeSet());
+        if (parts == null) {
+            result.add(relation);
+            return;
+        }
+        AttributeUniverse universe = relation.getUniverse();
+        assembleDecomposition(new Relation(relation.getName() + "_1", universe, parts[0]), splits, visited, result, depth + 1);
+        assembleDecomposition(new Relation(relation.getName() + "_2", universe, parts[1]), splits, visited, result, depth + 1);
+    }
+
+    /**
+     * Removes relations whose attributes are a subset of an earlier relation's, or a proper subset of a later one's.
+     * Such a relation is a projection of the other one, so dropping it keeps the join lossless.
+     */
+    static List<Relation> removeSubsumedRelations(List<Relation> relations) {
+        List<Relation> result = new ArrayList<>();
+        for (int i = 0; i < relations.size(); i++) {
+            AttributeSet attributes = relations.get(i).getAttributeSet();
+            boolean subsumed = false;
+            for (int j = 0; j < relations.size() && !subsumed; j++) {
+                AttributeSet other = relations.get(j).getAttributeSet();
+                subsumed = i != j && other.containsAll(attributes) && (j < i || !attributes.equals(other));
+            }
+            if (!subsumed) {
+                result.add(relations.get(i));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Splits the sub-relation 'attributes' into two lossless parts, or returns null if it is already in BCNF.
+     * Closures are taken against the engine's original FDs and restricted to the relation, so nothing is projected.
+     * Looks for a violating left side X in this order and stops at the first one, splitting into X+ and (R \ X+) ∪ X:
+     * <ol>
+     *     <li>the left sides of the original FDs that lie inside the relation;</li>
+     *     <li>for every pair of attributes a, b the set R \ {a, b}, which violates BCNF if it derives exactly one of them.
+     *     If no such set derives either attribute, the relation is in BCNF.</li>
+     * </ol>
+     * If neither step finds a witness, the relation is split with Tsou and Fischer's method, which takes a polynomial
+     * number of closures. Use {@link #splitAttributes(AttributeSet, ClosureEngine, AnalysisBudget, boolean)} to split
+     * at a smallest violating left side instead.
+     */
+    public static AttributeSet[] splitAttributes(AttributeSet attributes, ClosureEngine engine) {
+        return splitAttributes(attributes, engine, AnalysisBudget.unlimited());
+    }
+
+    /**
+     * Same as {@link #splitAttributes(AttributeSet, ClosureEngine)}, but returns null if 'budget' runs out before
+     * a split is found.
+     */
+    public static AttributeSet[] splitAttributes(AttributeSet attributes, ClosureEngine engine, AnalysisBudget budget) {
+        return splitAttributes(attributes, engine, budget, false);
+    }
+
+    /**
+     * Same as {@link #splitAttributes(AttributeSet, ClosureEngine, AnalysisBudget)}. If 'smallestViolation' is set,
+     * steps 1 and 2 only decide whether the relation is in BCNF, and it is then split at the first violating subset
+     * in order of size. That takes up to 2^n closures, each counted against 'budget'.
+     * Relations too wide to enumerate subsets of are split with Tsou and Fischer's method either way.
+     */
+    public static AttributeSet[] splitAttributes(AttributeSet attributes, ClosureEngine engine, AnalysisBudget budget,
+                                                 boolean smallestViolation) {
+        AttributeUniverse universe = engine.getUniverse();
+
+        //Step 1: left sides of the original FDs
+        AttributeSet X = null;
+        for (FunctionalDependency fd : engine.getFunctionalDependencies()) {
+            AttributeSet left = fd.getLeftSet(universe);
+            if (attributes.containsAll(left) && violatesBCNF(attributes, engine, left)) {
+                X = left;
+                break;
+            }
+        }
+
+        //Step 2: R \ {a, b} for every pair
+        int[] ids = attributes.toArray();
+        int n = ids.length;
+        if (X == null) {
+            if (n <= 2) {
+                return null;
+            }
+            boolean anyDerived = false;
+            for (int i = 0; i < n && X == null; i++) {
+                for (int j = i + 1; j < n; j++) {
+                    AttributeSet rest = attributes.copy();
+                    rest.remove(ids[i]);
+                    rest.remove(ids[j]);
+                    AttributeSet closure = engine.closureOf(rest);
+                    boolean a = closure.contains(ids[i]);
+                    boolean b = closure.contains(ids[j]);
+                    if (a != b) {
+                        X = rest;
+                        break;
+                    }
+                    anyDerived |= a;
+                }
+            }
+            if (X == null && !anyDerived) {
+                return null;
+            }
+        }
+
+        //Step 3: a smallest violating subset if asked for, else Tsou and Fischer's split when steps 1-2 found no witness
+        if (smallestViolation && n <= SubsetSpliterator.MAX_ATTRIBUTES) {
+            AnalysisListener listener = AnalysisListener.shared();
+            X = RelationKeyUtils.streamSubsets(attributes, 1, n - 2, false)
+                    .takeWhile(subset -> budget.visit())
+                    .peek(subset -> listener.subsetsVisited(1))
+                    .filter(subset -> violatesBCNF(attributes, engine, subset))
+                    .findFirst()
+                    .orElse(null);
+            if (X == null) {
+                return null;
+            }
+        } else if (X == null) {
+            return splitTsouFischer(attributes, engine, budget);
+        }
+
+        AttributeSet r1Attrs = engine.closureOf(X).intersection(attributes);
+        // R2 = (R \ r1Attrs) ∪ X
+        AttributeSet r2Attrs = attributes.difference(r1Attrs);
+        r2Attrs.addAll(X);
+        return new AttributeSet[]{r1Attrs, r2Attrs};
+    }
+
+    private static boolean violatesBCNF(AttributeSet attributes, ClosureEngine engine, AttributeSet X) {
+        AttributeSet closure = engine.closureOf(X).intersection(attributes);
+        return !closure.equals(X) && !closure.equals(attributes);
+    }
+
+    /**
+     * Shrinks Y from the whole relation by dropping b whenever some a in Y is derived by Y \ {a, b}, until Y is in BCNF.
+     * With a the attribute of the last drop, Y \ {a} -> a holds, so splitting into Y and R \ {a} is lossless.
+     * Takes a polynomial number of closures, and returns null if 'budget' runs out between two drops.
+     */
+    private static AttributeSet[] splitTsouFischer(AttributeSet attributes, ClosureEngine engine, AnalysisBudget budget) {
+        AttributeSet Y = attributes.copy();
+        int derived = -1;
+        boolean shrunk = true;
+        while (shrunk) {
+            if (budget.isExhausted()) {
+                return null;
+            }
+            shrunk = false;
+            int[] ids = Y.toArray();
+            search:
+            for (int i = 0; i < ids.length; i++) {
+                for (int j = 0; j < ids.length; j++) {
+                    if (i == j) continue;
+                    AttributeSet rest = Y.copy();
+                    rest.remove(ids[i]);
+                    rest.remove(ids[j]);
+                    if (engine.closureOf(rest).contains(ids[i])) {
+                        Y.remove(ids[j]);
+                        derived = ids[i];
+                        shrunk = true;
+                        break search;
+                    }
+                }
+            }
+        }
+        if (derived < 0) {
+            return null;
+        }
+        AttributeSet r2Attrs = attributes.copy();
+        r2Attrs.remove(derived);
+        return new AttributeSet[]{Y, r2Attrs};
+    }
+
+    /**
+     * Splits one sub-relation, then forks a task for each part that no other task has claimed yet.
+     * Every task is forked and joined by the task that claimed it, so once the root completes all of them have.
+     */
+    @SuppressWarnings("serial")
+    private static class SplitTask extends RecursiveTask<AttributeSet[]> {
+        private final AttributeSet attributes;
+        private final ClosureEngine engine;
+        private final Map<AttributeSet, SplitTask> splits;
+
+        private SplitTask(AttributeSet attributes, ClosureEngine engine, Map<AttributeSet, SplitTask> splits) {
+            this.attributes = attributes;
+            this.engine = engine;
+            this.splits = splits;
+        }
+
+        @Override
+        protected AttributeSet[] compute() {
+            AttributeSet[] parts = splitAttributes(attributes, engine);
+            if (parts == null) {
+                return null;
+            }
+            List<SplitTask> forked = new ArrayList<>(parts.length);
+            for (AttributeSet part : parts) {
+                SplitTask task = new SplitTask(part, engine, splits);
+                if (splits.putIfAbsent(part, task) == null) {
+                    forked.add(task);
+                    task.fork();
+                }
+            }
+            // Only join our own subtasks; a part claimed by another task is completed by that task's subtree
+            for (SplitTask task : forked) {
+                task.join();
+            }
+            return parts;
+        }
+    }
+
+    /**
+     * Decomposes 'relation' using a closure table of the original relation instead of a list of all inferred FDs.
+     * The given FDs that apply to 'relation' are tried first, in order; after that the smallest subset X of the
+     * relation whose closure within the relation is neither X nor the whole relation is used.
+     */
+    public static List<Relation> recDecomposeRelationIntoBCNF(Relation relation, List<FunctionalDependency> fds, ClosureTable table) {
+        return recDecomposeRelationIntoBCNF(relation, fds, relation.getUniverse().covering(fds), table, 1);
+    }
+
+    /**
+     * 'universe' is the one the FDs are bound to, which covers them all, see {@link AttributeUniverse#covering}.
+     */
+    private static List<Relation> recDecomposeRelationIntoBCNF(Relation relation, List<FunctionalDependency> fds, AttributeUniverse universe,
+                                                               ClosureTable table, int depth) {
+        AnalysisListener.shared().recursionEntered(depth);
+        long attributes = table.toMask(relation.getAttributeSet());
+
+        // 1) Find a violating left side; if there is none the relation is in BCNF
+        long X = findViolatingSubset(relation, fds, universe, table, attributes);
+        if (X < 0) {
+            return List.of(relation);
+        }
+
+        // 2) Decompose into R1 = X+ and R2 = (R \ X+) ∪ X
+        long r1Attrs = table.closure(X) & attributes;
+        long r2Attrs = (attributes & ~r1Attrs) | X;
+        Relation r1 = new Relation(relation.getName() + "_1", relation.getUniverse(), table.toAttributeSet(r1Attrs));
+        Relation r2 = new Relation(relation.getName() + "_2", relation.getUniverse(), table.toAttributeSet(r2Attrs));
+
+        // 3) Recursively decompose each sub-relation
+        List<Relation> result = new ArrayList<>();
+        result.addAll(recDecomposeRelationIntoBCNF(r1, fds, universe, table, depth + 1));
+        result.addAll(recDecomposeRelationIntoBCNF(r2, fds, universe, table, depth + 1));
+
+        return result;
+    }
+
+    /**
+     * Returns the position mask of a left side that violates BCNF in the sub-relation 'attributes', or -1 if there is none.
+     */
+    private static long findViolatingSubset(Relation relation, List<FunctionalDependency> fds, AttributeUniverse universe,
+                                            ClosureTable table, long attributes) {
+        for (FunctionalDependency fd : fds) {
+            AttributeSet left = fd.getLeftSet(universe);
+            if (relation.getAttributeSet().containsAll(left)) {
+                long X = table.toMask(left);
+                if (violatesBCNF(table, X, attributes)) {
+                    return X;
+                }
+            }
+        }
+        int[] positions = AttributeSet.ofMask(attributes).toArray();
+        int n = positions.length;
+        AnalysisListener listener = AnalysisListener.shared();
+        return SubsetSpliterator.stream(n, 1, n - 1, false)
+                .peek(mask -> listener.subsetsVisited(1))
+                .map(mask -> RelationKeyUtils.depositMask(positions, mask))
+                .filter(X -> violatesBCNF(table, X, attributes))
+                .findFirst()
+                .orElse(-1);
     }
+
+    private static boolean violatesBCNF(ClosureTable table, long X, long attributes) {
+        long closure = table.closure(X) & attributes;
+        return closure != X && closure != attributes;
+    }
+
     public static List<Relation> recDecomposeRelationIntoBCNF(Relation relation, List<FunctionalDependency> fds, List<FunctionalDependency> allFDs) {
         // 1) If relation is already in BCNF, then immediately return
         if (isInBCNF(relation, fds)) {
@@ -55,23 +412,24 @@ public class BCNFUtils {
         FunctionalDependency fd = violatingFDs.getFirst();
 
         // Let X = fd.left, Y = fd.right
-        // 3) Decompose:
-        Set<String> originalAttrs = new HashSet<>(relation.getAttributes());
-        Set<String> X = fd.getLeft();
-        Set<String> r1Attrs = RelationKeyUtils.getClosureFromAttributes(X, fds).getClosure();
+        // 3) Decompose (the FDs may mention attributes outside the relation, which its own universe doesn't have):
+        AttributeUniverse universe = relation.getUniverse().covering(fds);
+        AttributeSet X = fd.getLeftSet(universe);
+        AttributeSet r1Attrs = RelationKeyUtils.getClosureFromAttributes(universe, X, fds).getClosureSet();
         // R2 = (R \ r1Attrs) ∪ X
-        Set<String> r2Attrs = new HashSet<>(originalAttrs);
-        r2Attrs.removeAll(r1Attrs);
+        AttributeSet r2Attrs = relation.getAttributeSet().difference(r1Attrs);
         r2Attrs.addAll(X);
 
 
-        // Create new relation objects
+        // Create new relation objects, sharing the attribute ids of the original relation
         Relation r1 = new Relation(
                 relation.getName() + "_1",
-                r1Attrs  // or keep them sorted if you like
+                universe,
+                r1Attrs
         );
         Relation r2 = new Relation(
                 relation.getName() + "_2",
+                universe,
                 r2Attrs
         );
 
@@ -88,15 +446,83 @@ public class BCNFUtils {
         return result;
     }
 
+    /**
+     * Returns X -> (X+ ∩ relation) for every subset X of 'relation', smallest subsets first. Attributes outside the
+     * relation are left out of the right sides, as the result describes the FDs that hold within the relation.
+     * All overloads return the same FDs in the same order.
+     */
     public static List<FunctionalDependency> inferAllFunctionalDependencies(Relation relation, List<FunctionalDependency> fds){
-        List<Set<String>> combinations = RelationKeyUtils.getCombinations(relation.getAttributes());
-        List<FunctionalDependency> allFds = new ArrayList<>();
-        for(Set<String> combination : combinations) {
-            Set<String> closure = RelationKeyUtils.getClosureFromAttributes(combination, fds).getClosure();
-            FunctionalDependency fd = new FunctionalDependency(combination, closure);
-            allFds.add(fd);
+        AnalysisListener listener = AnalysisListener.shared();
+        long start = listener.phaseStarted(AnalysisPhase.BCNF_PROJECTION);
+        try {
+            AttributeUniverse universe = relation.getUniverse();
+            ClosureTable table = ClosureTable.build(relation, fds);
+            List<FunctionalDependency> allFds = new ArrayList<>();
+            SubsetSpliterator.of(table.getAttributeCount()).forEachRemaining((long mask) -> allFds.add(new FunctionalDependency(universe,
+                    table.toAttributeSet(mask), table.toAttributeSet(table.closure(mask)))));
+            return allFds;
+        } finally {
+            listener.phaseFinished(AnalysisPhase.BCNF_PROJECTION, start);
+        }
+    }
+
+    /**
+     * Same as {@link #inferAllFunctionalDependencies(Relation, List)}, but stops once 'budget' runs out.
+     * Closures are taken one subset at a time instead of filling a closure table first, so an incomplete result holds
+     * the FDs for every subset X up to some size, and for some of the next size.
+     */
+    public static PartialResult<List<FunctionalDependency>> inferAllFunctionalDependencies(Relation relation, List<FunctionalDependency> fds, AnalysisBudget budget){
+        AnalysisListener listener = AnalysisListener.shared();
+        long start = listener.phaseStarted(AnalysisPhase.BCNF_PROJECTION);
+        try {
+            AttributeUniverse universe = relation.getUniverse();
+            AttributeSet attributes = relation.getAttributeSet();
+            // One closure per subset would only evict more useful entries from the shared cache
+            ClosureEngine engine = ClosureEngine.prepare(universe, fds, null);
+            int[] ids = attributes.toArray();
+            List<FunctionalDependency> allFds = new ArrayList<>();
+            SubsetSpliterator subsets = SubsetSpliterator.of(ids.length);
+            while (subsets.estimateSize() > 0 && budget.visit()) {
+                subsets.tryAdvance((long mask) -> {
+                    AttributeSet X = RelationKeyUtils.subsetOf(ids, mask);
+                    allFds.add(new FunctionalDependency(universe, X, engine.closureOf(X).intersection(attributes)));
+                });
+            }
+            listener.subsetsVisited(allFds.size());
+            return budget.result(allFds);
+        } finally {
+            listener.phaseFinished(AnalysisPhase.BCNF_PROJECTION, start);
+        }
+    }
+
+    /**
+     * Same as {@link #inferAllFunctionalDependencies(Relation, List)}, but the closures are computed on 'pool'.
+     * The result is in the same order as the sequential version.
+     */
+    public static List<FunctionalDependency> inferAllFunctionalDependencies(Relation relation, List<FunctionalDependency> fds, ForkJoinPool pool){
+        AnalysisListener listener = AnalysisListener.shared();
+        long start = listener.phaseStarted(AnalysisPhase.BCNF_PROJECTION);
+        try {
+            AttributeUniverse universe = relation.getUniverse();
+            AttributeSet attributes = relation.getAttributeSet();
+            ClosureEngine engine = ClosureEngine.prepare(universe, fds);
+            int[] ids = attributes.toArray();
+            if (!engine.fitsInMask()) {
+                return inferAllFunctionalDependencies(relation, fds);
+            }
+
+            long[] closures = SubsetTask.map(pool, SubsetSpliterator.of(ids.length),
+                    mask -> engine.closure(RelationKeyUtils.depositMask(ids, mask)));
+            listener.subsetsVisited(closures.length);
+            List<FunctionalDependency> allFds = new ArrayList<>(closures.length);
+            int[] i = new int[1];
+            long relationMask = attributes.toMask();
+            SubsetSpliterator.of(ids.length).forEachRemaining((long mask) -> allFds.add(new FunctionalDependency(universe,
+                    RelationKeyUtils.subsetOf(ids, mask), AttributeSet.ofMask(closures[i[0]++] & relationMask))));
+            return allFds;
+        } finally {
+            listener.phaseFinished(AnalysisPhase.BCNF_PROJECTION, start);
         }
-        return allFds;
     }
 
     /**
@@ -104,51 +530,87 @@ public class BCNFUtils {
      * i.e., both left side and right side must be a subset of relation's attributes.
      */
     public static List<FunctionalDependency> projectFDs(Relation relation, List<FunctionalDependency> fds) {
-        Set<String> relAttrs = new HashSet<>(relation.getAttributes());
+        AttributeUniverse universe = relation.getUniverse().covering(fds);
+        AttributeSet relAttrs = relation.getAttributeSet();
         List<FunctionalDependency> result = new ArrayList<>();
 
         for (FunctionalDependency fd : fds) {
             // Filter out FDs that reference attributes not in 'relAttrs'
-            if (relAttrs.containsAll(fd.getLeft())) {
-                FunctionalDependency projectFD = new FunctionalDependency(new HashSet<>(fd.getLeft()), new HashSet<>(fd.getRight()));
-                projectFD.getRight().retainAll(relAttrs);
-                result.add(projectFD);
+            AttributeSet left = fd.getLeftSet(universe);
+            if (relAttrs.containsAll(left)) {
+                result.add(new FunctionalDependency(universe, left.copy(), fd.getRightSet(universe).intersection(relAttrs)));
             }
         }
         return result;
     }
 
-    public static List<FunctionalDependency> getViolatingBCNFFunctionalDependencies(Relation relation, List<FunctionalDependency> fds) {
-        List<Set<String>> superKeys = RelationKeyUtils.getSuperKeys(relation, fds);
-        List<FunctionalDependency> nonTrivialFds = fds.stream().filter(fd -> !fd.isTrivialFunctionalDependency(fd)).toList();
-        List<FunctionalDependency> violatingFDs = new ArrayList<>();
-
-        for (FunctionalDependency fd : nonTrivialFds) {
-            boolean isKey = superKeys.stream()
-                    .anyMatch(key -> key.equals(fd.getLeft()));
-            if (!isKey) {
-                // Found a non-trivial FD whose left side isn't a key => Not in BCNF
-                violatingFDs.add(fd);
-            }
+    /**
+     * Projects the closure table onto 'relation': one FD X -> (X+ ∩ relation) for every non-empty subset X of it.
+     * 'relation' must share the universe of the table's relation and be a subset of it.
+     */
+    public static List<FunctionalDependency> projectFDs(Relation relation, ClosureTable table) {
+        AnalysisListener listener = AnalysisListener.shared();
+        long start = listener.phaseStarted(AnalysisPhase.BCNF_PROJECTION);
+        try {
+            AttributeUniverse universe = relation.getUniverse();
+            long attributes = table.toMask(relation.getAttributeSet());
+            int[] positions = AttributeSet.ofMask(attributes).toArray();
+            List<FunctionalDependency> result = new ArrayList<>();
+            SubsetSpliterator.of(positions.length).forEachRemaining((long subset) -> {
+                long X = RelationKeyUtils.depositMask(positions, subset);
+                result.add(new FunctionalDependency(universe, table.toAttributeSet(X), table.toAttributeSet(table.closure(X) & attributes)));
+            });
+            listener.subsetsVisited(result.size());
+            return result;
+        } finally {
+            listener.phaseFinished(AnalysisPhase.BCNF_PROJECTION, start);
         }
+    }
 
-        return violatingFDs;
+    /**
+     * Returns the non-trivial FDs of 'fds' whose left side is not a super key of 'relation'.
+     * Needs one closure per FD. FDs whose left side isn't inside the relation don't apply to it and are skipped;
+     * a right side is only considered where it falls inside the relation.
+     */
+    public static List<FunctionalDependency> getViolatingBCNFFunctionalDependencies(Relation relation, List<FunctionalDependency> fds) {
+        ClosureEngine engine = ClosureEngine.prepare(relation.getUniverse(), fds);
+        return fds.stream()
+                .filter(fd -> violatesBCNF(relation, engine, fd))
+                .toList();
     }
 
+    /**
+     * Checks the given FDs only, which is enough as long as they are a cover of the dependencies that hold on 'relation'
+     * (e.g. the FDs it was defined with, or a projection onto it).
+     */
     public static boolean isInBCNF(Relation relation, List<FunctionalDependency> fds) {
-        List<Set<String>> superKeys = RelationKeyUtils.getSuperKeys(relation, fds);
-        List<FunctionalDependency> nonTrivialFds = fds.stream().filter(fd -> !fd.isTrivialFunctionalDependency(fd)).toList();
+        AnalysisListener listener = AnalysisListener.shared();
+        long start = listener.phaseStarted(AnalysisPhase.BCNF_CHECK);
+        try {
+            ClosureEngine engine = ClosureEngine.prepare(relation.getUniverse(), fds);
+            return fds.stream().noneMatch(fd -> violatesBCNF(relation, engine, fd));
+        } finally {
+            listener.phaseFinished(AnalysisPhase.BCNF_CHECK, start);
+        }
+    }
 
-        for (FunctionalDependency fd : nonTrivialFds) {
-            boolean isKey = superKeys.stream()
-                    .anyMatch(key -> key.equals(fd.getLeft()));
-            if (!isKey) {
-                // Found a non-trivial FD whose left side isn't a key => Not in BCNF
-                return false;
-            }
+    private static boolean violatesBCNF(Relation relation, ClosureEngine engine, FunctionalDependency fd) {
+        AttributeUniverse universe = engine.getUniverse();
+        AttributeSet attributes = relation.getAttributeSet();
+        AttributeSet left = fd.getLeftSet(universe);
+        if (!attributes.containsAll(left) || isTrivialIn(relation, universe, fd)) {
+            return false;
         }
+        // Found a non-trivial FD whose left side isn't a super key => Not in BCNF
+        return !engine.closureOf(left).containsAll(attributes);
+    }
 
-        return true;
+    /**
+     * Returns true if the part of the FD's right side inside 'relation' is already in its left side.
+     * 'universe' must cover the FD, e.g. the universe of an engine prepared with it.
+     */
+    static boolean isTrivialIn(Relation relation, AttributeUniverse universe, FunctionalDependency fd) {
+        return fd.getLeftSet(universe).containsAll(fd.getRightSet(universe).intersection(relation.getAttributeSet()));
     }
 
 
@@ -0,0 +1,232 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Analyzes a line-delimited file of schemas, one "R(A,B,C,D); AB->C,C->D" spec per line (see {@link SchemaParser}).
+ * Every spec gets its candidate keys, its normal form and its verified 3NF and BCNF decompositions, written as one
+ * tab-separated output line in input order. Blank lines and lines starting with '#' are skipped.
+ * <p>
+ * Specs are analyzed on a fixed pool of workers. At most 'window' specs are read ahead of the oldest
+ * unfinished one; once the window is full the reader blocks until that spec is written out. Memory therefore
+ * depends on the window, not on the size of the input, and the output is streamed while the input is read.
+ * <p>
+ * With a timeout, each spec gets its own {@link AnalysisBudget}; a spec that runs out of time is written as an
+ * ERROR line naming the stop reason, and the batch moves on.
+ */
+public class BatchAnalyzer {
+    public static final Duration DEFAULT_TIMEOUT = Duration.ofSeconds(60);
+
+    private final int workers;
+    private final int window;
+    private final ResultStore store;
+    private final Duration timeout;
+
+    /**
+     * @param workers number of threads analyzing specs
+     * @param window most specs read but not yet written out, at least 'workers'
+     */
+    public BatchAnalyzer(int workers, int window) {
+        this(workers, window, null);
+    }
+
+    /**
+     * @param store results of earlier runs; schemas found in it aren't analyzed again, and new results are added.
+     *              May be null.
+     */
+    public BatchAnalyzer(int workers, int window, ResultStore store) {
+        this(workers, window, store, null);
+    }
+
+    /**
+     * @param timeout time each spec may take, or null for no limit
+     */
+    public BatchAnalyzer(int workers, int window, ResultStore store, Duration timeout) {
+        if (workers < 1) {
+            throw new IllegalArgumentException("At least one worker is needed, got " + workers);
+        }
+        this.workers = workers;
+        this.window = Math.max(window, workers);
+        this.store = store;
+        this.timeout = timeout;
+    }
+
+    /**
+     * Usage: BatchAnalyzer [input|-] [output|-] [workers] [store|-] [timeoutSeconds]
+     * Reads from and writes to the console when a file is missing or '-'. With a store file, results are looked up
+     * in and added to that {@link ResultStore}. Each spec may take {@link #DEFAULT_TIMEOUT} unless given.
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int workers = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        Duration timeout = args.length > 4 ? Duration.ofSeconds(Long.parseLong(args[4])) : DEFAULT_TIMEOUT;
+        try (ResultStore store = args.length > 3 && !args[3].equals("-") ? ResultStore.open(Path.of(args[3])) : null;
+             BufferedReader in = args.length > 0 && !args[0].equals("-")
+                ? Files.newBufferedReader(Path.of(args[0]), StandardCharsets.UTF_8)
+                : new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+             Writer out = args.length > 1 && !args[1].equals("-")
+                ? Files.newBufferedWriter(Path.of(args[1]), StandardCharsets.UTF_8)
+                : new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8))) {
+            BatchAnalyzer analyzer = new BatchAnalyzer(workers, 4 * workers, store, timeout);
+            long count = analyzer.run(in, out);
+            System.err.println("Analyzed " + count + " schemas" + (store != null ? ", " + store : ""));
+        }
+    }
+
+    /**
+     * Analyzes every spec read from 'in' and writes one line per spec to 'out', in input order.
+     * A spec that fails to parse or analyze produces an ERROR line instead of stopping the batch.
+     * @return number of specs analyzed
+     */
+    public long run(BufferedReader in, Writer out) throws IOException, InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(workers);
+        ArrayDeque<Future<String>> pending = new ArrayDeque<>(window);
+        long count = 0;
+        try {
+            String line;
+            long lineNumber = 0;
+            while ((line = in.readLine()) != null) {
+                lineNumber++;
+                String spec = line.trim();
+                if (spec.isEmpty() || spec.startsWith("#")) {
+                    continue;
+                }
+                //Step 1: write out whatever is already done, and wait for the oldest spec while the window is full
+                writeDone(pending, out, false);
+                while (pending.size() >= window) {
+                    writeHead(pending, out);
+                }
+                //Step 2: hand the spec to a worker
+                long number = lineNumber;
+                pending.add(pool.submit(() -> analyzeLine(number, spec)));
+                count++;
+            }
+            writeDone(pending, out, true);
+            out.flush();
+        } finally {
+            pool.shutdownNow();
+        }
+        return count;
+    }
+
+    // Writes finished specs from the head of 'pending'; with 'all', waits for every remaining spec
+    private static void writeDone(ArrayDeque<Future<String>> pending, Writer out, boolean all) throws IOException, InterruptedException {
+        while (!pending.isEmpty() && (all || pending.peekFirst().isDone())) {
+            writeHead(pending, out);
+        }
+    }
+
+    private static void writeHead(ArrayDeque<Future<String>> pending, Writer out) throws IOException, InterruptedException {
+        Future<String> head = pending.peekFirst();
+        if (!head.isDone()) {
+            // About to block, so let downstream see what has been written so far
+            out.flush();
+        }
+        try {
+            out.write(head.get());
+        } catch (ExecutionException e) {
+            // analyzeLine reports its own failures, so this is an Error thrown by a worker
+            throw new IllegalStateException("Worker failed", e.getCause());
+        }
+        out.write('\n');
+        pending.removeFirst();
+    }
+
+    // Analyzes one spec into its output line, or an ERROR line
+    private String analyzeLine(long lineNumber, String spec) {
+        try {
+            Schema schema = SchemaParser.parseSchema(spec);
+            Relation relation = schema.getRelation();
+            List<FunctionalDependency> fds = schema.getFunctionalDependencies();
+            // The budget starts once a worker picks the spec up, so time spent queued doesn't count
+            AnalysisBudget budget = AnalysisBudget.withTimeout(timeout);
+            PartialResult<SchemaAnalysis> analysis = store != null
+                    ? store.analyze(relation, fds, budget)
+                    : SchemaAnalysis.compute(relation, fds, budget);
+            if (!analysis.isComplete()) {
+                return lineNumber + "\tERROR\tStopped early: " + analysis.getStopReason() + " after " + timeout.toMillis() + " ms";
+            }
+            return format(lineNumber, relation, analysis.getValue());
+        } catch (IOException | RuntimeException e) {
+            return lineNumber + "\tERROR\t" + e;
+        }
+    }
+
+    /**
+     * Formats the analysis of one schema as
+     * "line, relation, keys=..., normal form, 3NF=..., BCNF=..., 3NFcheck=..., BCNFcheck=..." separated by tabs.
+     * Decompositions are written as relations in the input syntax, e.g. "R_1(A,B)". The checks are the
+     * {@link DecompositionVerifier} results for each decomposition.
+     */
+    public static String analyze(long lineNumber, Relation relation, List<FunctionalDependency> fds) {
+        return format(lineNumber, relation, SchemaAnalysis.compute(relation, fds));
+    }
+
+    /**
+     * Formats 'analysis' of 'relation' as described in {@link #analyze(long, Relation, List)}.
+     */
+    public static String format(long lineNumber, Relation relation, SchemaAnalysis analysis) {
+        List<Set<String>> keys = analysis.getCandidateKeys();
+        StringBuilder line = new StringBuilder();
+        line.append(lineNumber).append('\t').append(format(relation));
+        line.append("\tkeys=");
+        for (int i = 0; i < keys.size(); i++) {
+            line.append(i == 0 ? "" : ",").append('{').append(String.join(",", sorted(keys.get(i)))).append('}');
+        }
+        line.append("\tnormalForm=").append(analysis.getNormalForm());
+        line.append("\t3NF=").append(format(analysis.getThirdNF()));
+        line.append("\tBCNF=").append(format(analysis.getBCNF()));
+        line.append("\t3NFcheck=").append(format(analysis.getThirdNFReport()));
+        line.append("\tBCNFcheck=").append(format(analysis.getBCNFReport()));
+        return line.toString();
+    }
+
+    // "lossless,preserving", or e.g. "lossy,lost=A,B->C;D->E" listing what the decomposition can't enforce
+    private static String format(DecompositionReport report) {
+        StringBuilder text = new StringBuilder(report.isLossless() ? "lossless" : "lossy");
+        if (report.isDependencyPreserving()) {
+            return text.append(",preserving").toString();
+        }
+        text.append(",lost=");
+        List<FunctionalDependency> lost = report.getLostDependencies();
+        for (int i = 0; i < lost.size(); i++) {
+            FunctionalDependency fd = lost.get(i);
+            text.append(i == 0 ? "" : ";").append(String.join(",", sorted(fd.getLeft())))
+                    .append("->").append(String.join(",", sorted(fd.getRight())));
+        }
+        return text.toString();
+    }
+
+    private static String format(List<Relation> relations) {
+        List<String> parts = new ArrayList<>(relations.size());
+        for (Relation relation : relations) {
+            parts.add(format(relation));
+        }
+        return String.join(" ", parts);
+    }
+
+    private static String format(Relation relation) {
+        return relation.getName() + "(" + String.join(",", sorted(relation.getAttributes())) + ")";
+    }
+
+    private static List<String> sorted(Set<String> attributes) {
+        List<String> list = new ArrayList<>(attributes);
+        Collections.sort(list);
+        return list;
+    }
+}
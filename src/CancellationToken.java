@@ -0,0 +1,14 @@
+/**
+ * Flag a caller can raise from any thread to stop an analysis running under an {@link AnalysisBudget}.
+ */
+public class CancellationToken {
+    private volatile boolean cancelled;
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+}
@@ -0,0 +1,214 @@
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Size-bounded LRU cache of attribute closures.
+ * Entries are keyed by the id of the FD set (a 128-bit hash of {@link ClosureEngine#getFingerprint()}, see
+ * {@link FdSetId}) plus the attribute set whose closure was taken, so repeated super key, normal form and
+ * decomposition calls over the same relation and FDs reuse each other's closures. Looking up an entry costs a
+ * hash of the attribute set, not of the FDs.
+ * <p>
+ * The entries are split over {@value #SEGMENTS} segments by key hash, each an LRU of its own with its own lock,
+ * so threads taking closures in parallel rarely wait for each other.
+ * <p>
+ * Caching is opt-in: the {@link #shared()} cache starts with room for nothing, so engines skip it entirely.
+ * Most analyses take few closures per FD set, or many that are never asked for again, and a cache lookup then
+ * costs more than a closure. Install a cache with {@link #setShared} when the same closures are asked for
+ * repeatedly, e.g. many normal form checks over one schema.
+ */
+public class ClosureCache {
+    public static final int DEFAULT_MAX_SIZE = 1 << 16;
+    private static final int SEGMENTS = 16;
+
+    private static volatile ClosureCache shared = new ClosureCache(0);
+
+    private final int maxSize;
+    private final Segment[] segments;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Identifies an FD set by the first 128 bits of the SHA-256 of its fingerprint. Computed once per engine.
+     */
+    public static final class FdSetId {
+        private final long high;
+        private final long low;
+
+        private FdSetId(long high, long low) {
+            this.high = high;
+            this.low = low;
+        }
+
+        public static FdSetId of(String fingerprint) {
+            try {
+                byte[] digest = MessageDigest.getInstance("SHA-256").digest(fingerprint.getBytes(StandardCharsets.UTF_8));
+                ByteBuffer bytes = ByteBuffer.wrap(digest);
+                return new FdSetId(bytes.getLong(), bytes.getLong());
+            } catch (NoSuchAlgorithmException e) {
+                // Every Java platform is required to support SHA-256
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof FdSetId other)) return false;
+            return high == other.high && low == other.low;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(high);
+        }
+    }
+
+    /**
+     * @param maxSize number of closures kept before the least recently used one is evicted; 0 disables caching
+     */
+    public ClosureCache(int maxSize) {
+        this.maxSize = maxSize;
+        this.segments = new Segment[SEGMENTS];
+        int segmentSize = (maxSize + SEGMENTS - 1) / SEGMENTS;
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment(segmentSize);
+        }
+    }
+
+    /**
+     * Cache used by {@link ClosureEngine#prepare(AttributeUniverse, java.util.List)}. Disabled until
+     * {@link #setShared} installs one.
+     */
+    public static ClosureCache shared() {
+        return shared;
+    }
+
+    public static void setShared(ClosureCache cache) {
+        shared = cache;
+    }
+
+    /**
+     * Returns the cached closure of 'attributes' under the FD set 'id', or null on a miss.
+     */
+    public ClosureResult get(FdSetId id, AttributeSet attributes) {
+        if (maxSize == 0) {
+            return null;
+        }
+        Key key = new Key(id, attributes);
+        Segment segment = segmentOf(key);
+        ClosureResult result;
+        synchronized (segment) {
+            result = segment.get(key);
+        }
+        if (result == null) {
+            misses.increment();
+        } else {
+            hits.increment();
+        }
+        return result;
+    }
+
+    public void put(FdSetId id, AttributeSet attributes, ClosureResult result) {
+        if (maxSize == 0) {
+            return;
+        }
+        // Copy the key, callers are free to modify their attribute set afterwards
+        Key key = new Key(id, attributes.copy());
+        Segment segment = segmentOf(key);
+        synchronized (segment) {
+            segment.put(key, result);
+        }
+    }
+
+    private Segment segmentOf(Key key) {
+        // The top bits, as each segment's HashMap picks buckets by the low bits
+        return segments[key.hash >>> (Integer.SIZE - Integer.numberOfTrailingZeros(SEGMENTS))];
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public void clear() {
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.clear();
+            }
+        }
+        hits.reset();
+        misses.reset();
+    }
+
+    @Override
+    public String toString() {
+        return "ClosureCache{" +
+                "size=" + size() +
+                ", maxSize=" + maxSize +
+                ", hits=" + getHits() +
+                ", misses=" + getMisses() +
+                '}';
+    }
+
+    // One LRU share of the cache; callers synchronize on it
+    private static class Segment extends LinkedHashMap<Key, ClosureResult> {
+        private static final long serialVersionUID = 1L;
+        private final int maxSize;
+
+        private Segment(int maxSize) {
+            super(16, 0.75f, true);
+            this.maxSize = maxSize;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, ClosureResult> eldest) {
+            return size() > maxSize;
+        }
+    }
+
+    private static class Key {
+        private final FdSetId id;
+        private final AttributeSet attributes;
+        private final int hash;
+
+        private Key(FdSetId id, AttributeSet attributes) {
+            this.id = id;
+            this.attributes = attributes;
+            this.hash = 31 * id.hashCode() + attributes.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key other)) return false;
+            return hash == other.hash && id.equals(other.id) && attributes.equals(other.attributes);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,262 @@
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Attribute closure over a fixed list of FDs, prepared once and then queried many times.
+ * Uses the LINCLOSURE algorithm (Beeri & Bernstein): every FD keeps a counter of left side
+ * attributes not yet in the closure, and an index maps each attribute to the FDs whose left side
+ * mentions it. Each attribute is processed once, so a closure costs O(total size of the FDs)
+ * instead of rescanning the FD list until nothing changes.
+ */
+public class ClosureEngine {
+    private final AttributeUniverse universe;
+    private final List<FunctionalDependency> fds;
+    // Number of attribute ids known when the engine was prepared; higher ids appear in no FD
+    private final int size;
+    private final int[] lhsSize;
+    private final AttributeSet[] rhs;
+    // attribute id -> indices of the FDs whose left side contains it
+    private final int[][] index;
+    // FDs with an empty left side, which fire for every input
+    private final int[] unconditional;
+    // Single-word copies of the right sides, only when the universe fits in 64 ids
+    private final long[] rhsMasks;
+    private final ClosureCache cache;
+    private final AnalysisListener listener;
+    private String fingerprint;
+    private ClosureCache.FdSetId cacheId;
+    // FDs switched off with setEnabled; they never fire
+    private final boolean[] disabled;
+    private int disabledCount;
+
+    private ClosureEngine(AttributeUniverse universe, List<FunctionalDependency> fds, ClosureCache cache) {
+        this.universe = universe.covering(fds);
+        this.fds = fds;
+        this.cache = cache;
+        this.listener = AnalysisListener.shared();
+
+        int m = fds.size();
+        AttributeSet[] lhs = new AttributeSet[m];
+        this.rhs = new AttributeSet[m];
+        for (int i = 0; i < m; i++) {
+            lhs[i] = fds.get(i).getLeftSet(this.universe);
+            rhs[i] = fds.get(i).getRightSet(this.universe);
+        }
+        this.size = this.universe.size();
+
+        this.disabled = new boolean[m];
+        this.lhsSize = new int[m];
+        int[] occurrences = new int[size];
+        int unconditionalCount = 0;
+        for (int i = 0; i < m; i++) {
+            lhsSize[i] = lhs[i].cardinality();
+            if (lhsSize[i] == 0) unconditionalCount++;
+            for (int a = lhs[i].nextSetBit(0); a >= 0; a = lhs[i].nextSetBit(a + 1)) {
+                occurrences[a]++;
+            }
+        }
+
+        this.index = new int[size][];
+        for (int a = 0; a < size; a++) {
+            index[a] = new int[occurrences[a]];
+        }
+        int[] fill = new int[size];
+        this.unconditional = new int[unconditionalCount];
+        int u = 0;
+        for (int i = 0; i < m; i++) {
+            if (lhsSize[i] == 0) unconditional[u++] = i;
+            for (int a = lhs[i].nextSetBit(0); a >= 0; a = lhs[i].nextSetBit(a + 1)) {
+                index[a][fill[a]++] = i;
+            }
+        }
+
+        if (size <= 64) {
+            this.rhsMasks = new long[m];
+            for (int i = 0; i < m; i++) {
+                rhsMasks[i] = rhs[i].toMask();
+            }
+        } else {
+            this.rhsMasks = null;
+        }
+    }
+
+    /**
+     * Builds the counters and attribute index for 'fds'. The FDs are bound to 'universe', or to a copy of it if they
+     * mention attributes it doesn't have (see {@link #getUniverse()}); 'universe' itself never grows.
+     * Closures go through {@link ClosureCache#shared()}, which is disabled unless one was installed,
+     * and are reported to {@link AnalysisListener#shared()}.
+     */
+    public static ClosureEngine prepare(AttributeUniverse universe, List<FunctionalDependency> fds) {
+        return new ClosureEngine(universe, fds, ClosureCache.shared());
+    }
+
+    public static ClosureEngine prepare(AttributeUniverse universe, List<FunctionalDependency> fds, ClosureCache cache) {
+        return new ClosureEngine(universe, fds, cache);
+    }
+
+    /**
+     * Universe the FDs are bound to: the one passed to {@link #prepare}, or a copy with the FDs' other attributes
+     * added after its own. Ids of the passed universe mean the same in both.
+     */
+    public AttributeUniverse getUniverse() {
+        return universe;
+    }
+
+    public List<FunctionalDependency> getFunctionalDependencies() {
+        return fds;
+    }
+
+    /**
+     * Switches FD 'index' (its position in the prepared list) on or off in O(1), so callers can test
+     * whether an FD is implied by the others without preparing a new engine.
+     * While any FD is off, closures bypass the cache. Not safe to call while other threads take closures.
+     */
+    public void setEnabled(int index, boolean enabled) {
+        if (disabled[index] == enabled) {
+            disabled[index] = !enabled;
+            disabledCount += enabled ? -1 : 1;
+        }
+    }
+
+    public boolean isEnabled(int index) {
+        return !disabled[index];
+    }
+
+    /**
+     * Canonical description of the universe and FD set, independent of FD order and duplicates.
+     * Engines over equally named universes and equal FD sets share a fingerprint, and so share cached closures.
+     */
+    public String getFingerprint() {
+        String result = fingerprint;
+        if (result == null) {
+            TreeSet<String> canonicalFds = new TreeSet<>();
+            for (int i = 0; i < lhsSize.length; i++) {
+                canonicalFds.add(fds.get(i).getLeftSet(universe) + ">" + rhs[i]);
+            }
+            result = String.join(",", universe.getNames().subList(0, size)) + "|" + String.join(";", canonicalFds);
+            fingerprint = result;
+        }
+        return result;
+    }
+
+    /**
+     * Computes the closure of 'attributes', or returns it from the engine's {@link ClosureCache}.
+     * The result may be shared with other callers, so its closure set must not be modified.
+     * The reported depth is the number of passes the naive fixpoint loop would need in the worst
+     * FD order: one per round of newly derived attributes, plus the final pass that finds nothing new.
+     */
+    public ClosureResult closure(AttributeSet attributes) {
+        // Ids interned after the engine was prepared aren't covered by the fingerprint
+        if (cache == null || cache.getMaxSize() == 0 || disabledCount > 0 || attributes.nextSetBit(size) >= 0) {
+            return computeClosure(attributes);
+        }
+        ClosureCache.FdSetId key = cacheId;
+        if (key == null) {
+            key = ClosureCache.FdSetId.of(getFingerprint());
+            cacheId = key;
+        }
+        ClosureResult result = cache.get(key, attributes);
+        if (result == null) {
+            result = computeClosure(attributes);
+            cache.put(key, attributes, result);
+        } else {
+            listener.closureCacheHit();
+        }
+        return result;
+    }
+
+    private ClosureResult computeClosure(AttributeSet attributes) {
+        AttributeSet closure = attributes.copy();
+        int[] remaining = lhsSize.clone();
+        int[] queue = new int[size];
+        int tail = 0;
+
+        for (int a = closure.nextSetBit(0); a >= 0 && a < size; a = closure.nextSetBit(a + 1)) {
+            queue[tail++] = a;
+        }
+        for (int i : unconditional) {
+            if (!disabled[i]) tail = fire(i, closure, queue, tail);
+        }
+
+        int depth = 1;
+        int scans = 0;
+        int head = 0;
+        int roundEnd = tail;
+        while (head < tail) {
+            int a = queue[head++];
+            scans += index[a].length;
+            for (int i : index[a]) {
+                if (--remaining[i] == 0 && !disabled[i]) {
+                    tail = fire(i, closure, queue, tail);
+                }
+            }
+            if (head == roundEnd && head < tail) {
+                // Everything queued from here on was derived in the round just finished
+                depth++;
+                roundEnd = tail;
+            }
+        }
+        listener.closureComputed(depth, scans);
+        return new ClosureResult(universe, closure, depth);
+    }
+
+    private int fire(int fd, AttributeSet closure, int[] queue, int tail) {
+        AttributeSet right = rhs[fd];
+        for (int b = right.nextSetBit(0); b >= 0; b = right.nextSetBit(b + 1)) {
+            if (closure.add(b)) {
+                queue[tail++] = b;
+            }
+        }
+        return tail;
+    }
+
+    /**
+     * Computes the closure of 'attributes' without tracking depth.
+     */
+    public AttributeSet closureOf(AttributeSet attributes) {
+        return closure(attributes).getClosureSet();
+    }
+
+    /**
+     * Returns true if {@link #closure(long)} can be used, i.e. every id the FDs use is below 64.
+     */
+    public boolean fitsInMask() {
+        return rhsMasks != null;
+    }
+
+    /**
+     * Computes the closure of a single-word attribute mask.
+     * Only available when every id the FDs use is below 64. This path is meant for bulk enumeration
+     * and doesn't go through the cache.
+     */
+    public long closure(long mask) {
+        if (rhsMasks == null) {
+            throw new IllegalStateException("Universe has " + size + " attributes, too many for a single-word mask");
+        }
+        int[] remaining = lhsSize.clone();
+        long closure = mask;
+        long pending = mask;
+        int scans = 0;
+        for (int i : unconditional) {
+            if (disabled[i]) continue;
+            long added = rhsMasks[i] & ~closure;
+            closure |= added;
+            pending |= added;
+        }
+        while (pending != 0) {
+            int a = Long.numberOfTrailingZeros(pending);
+            pending &= pending - 1;
+            if (a >= size) continue;
+            scans += index[a].length;
+            for (int i : index[a]) {
+                if (--remaining[i] == 0 && !disabled[i]) {
+                    long added = rhsMasks[i] & ~closure;
+                    closure |= added;
+                    pending |= added;
+                }
+            }
+        }
+        listener.closureComputed(0, scans);
+        return closure;
+    }
+}
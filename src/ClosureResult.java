@@ -1,24 +1,47 @@
 import java.util.Set;
 
 public class ClosureResult {
-    private final Set<String> closure;
+    private Set<String> closure;
     private final Integer depth;
+    private final AttributeUniverse universe;
+    private final AttributeSet closureSet;
 
     public ClosureResult(Set<String> closure, Integer depth) {
         this.closure = closure;
         this.depth = depth;
+        this.universe = null;
+        this.closureSet = null;
+    }
+
+    /**
+     * Creates a result from attribute ids; the name set is only built if {@link #getClosure()} is called.
+     */
+    public ClosureResult(AttributeUniverse universe, AttributeSet closureSet, Integer depth) {
+        this.depth = depth;
+        this.universe = universe;
+        this.closureSet = closureSet;
     }
 
     public Set<String> getClosure() {
+        if (closure == null) {
+            closure = universe.toNames(closureSet);
+        }
         return closure;
     }
 
+    /**
+     * Returns the closure as ids, or null if this result was created from attribute names.
+     */
+    public AttributeSet getClosureSet() {
+        return closureSet;
+    }
+
     public Integer getDepth() {
         return depth;
     }
 
     @Override
     public String toString() {
-        return "(" + closure + ", " + depth + ")";
+        return "(" + getClosure() + ", " + depth + ")";
     }
 }
@@ -0,0 +1,182 @@
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Closure of every subset of a relation's attributes, stored as one long per subset.
+ * Subsets and closures are masks over the relation's attribute positions (bit i is the i-th smallest attribute id),
+ * and the table is indexed by the subset mask. Up to 2^{@value #HEAP_LIMIT} entries live in a long[];
+ * larger tables are kept off-heap in a direct {@link LongBuffer}.
+ * <p>
+ * The table is filled in increasing mask order, so every proper subset of a mask is done before it.
+ * If X \ {a} already derives a, the closure of X is the closure of X \ {a}; otherwise the closures of two
+ * such smaller subsets seed the engine, which then only has to derive what they didn't already cover.
+ */
+public class ClosureTable {
+    // Largest relation kept in a long[]; 2^20 entries take 8 MB
+    public static final int HEAP_LIMIT = 20;
+    // Largest relation whose table fits in a single direct buffer (2^27 entries take 1 GB)
+    public static final int MAX_ATTRIBUTES = 27;
+
+    private final Relation relation;
+    private final int n;
+    // Attribute id of each position
+    private final int[] ids;
+    // Position of each attribute id, or -1 for ids outside the relation
+    private final int[] positions;
+    // True when position i holds id i, so masks need no translation
+    private final boolean identity;
+    private final long[] heap;
+    private final LongBuffer offHeap;
+
+    private ClosureTable(Relation relation, ClosureEngine engine) {
+        AnalysisListener listener = AnalysisListener.shared();
+        long start = listener.phaseStarted(AnalysisPhase.CLOSURE_TABLE);
+        this.relation = relation;
+        this.ids = relation.getAttributeSet().toArray();
+        this.n = ids.length;
+        if (n > MAX_ATTRIBUTES) {
+            throw new IllegalArgumentException("Relation " + relation.getName() + " has " + n
+                    + " attributes, a closure table supports at most " + MAX_ATTRIBUTES);
+        }
+        int universeSize = engine.getUniverse().size();
+        this.positions = new int[universeSize];
+        Arrays.fill(positions, -1);
+        boolean sameIds = true;
+        for (int i = 0; i < n; i++) {
+            positions[ids[i]] = i;
+            sameIds &= ids[i] == i;
+        }
+        this.identity = sameIds;
+
+        int entries = 1 << n;
+        if (n <= HEAP_LIMIT) {
+            this.heap = new long[entries];
+            this.offHeap = null;
+        } else {
+            this.heap = null;
+            this.offHeap = ByteBuffer.allocateDirect(entries * Long.BYTES).order(ByteOrder.nativeOrder()).asLongBuffer();
+        }
+        fill(engine);
+        listener.subsetsVisited(entries);
+        listener.phaseFinished(AnalysisPhase.CLOSURE_TABLE, start);
+    }
+
+    public static ClosureTable build(Relation relation, List<FunctionalDependency> fds) {
+        return new ClosureTable(relation, ClosureEngine.prepare(relation.getUniverse(), fds));
+    }
+
+    public static ClosureTable build(Relation relation, ClosureEngine engine) {
+        return new ClosureTable(relation, engine);
+    }
+
+    private void fill(ClosureEngine engine) {
+        long all = (1L << n) - 1;
+        set(0, closeFrom(engine, 0) & all);
+        for (long mask = 1; mask <= all; mask++) {
+            long low = mask & -mask;
+            long rest = mask ^ low;
+            long closure = get(rest);
+            if ((closure & low) != 0) {
+                // X \ {a} already derives a
+                set(mask, closure);
+                continue;
+            }
+            long seed = closure | low;
+            if (rest != 0) {
+                long second = rest & -rest;
+                long other = get(mask ^ second);
+                if ((other & second) != 0) {
+                    set(mask, other);
+                    continue;
+                }
+                seed |= other;
+            }
+            set(mask, closeFrom(engine, seed) & all);
+        }
+    }
+
+    private long closeFrom(ClosureEngine engine, long seed) {
+        if (engine.fitsInMask()) {
+            return toPositions(engine.closure(identity ? seed : RelationKeyUtils.depositMask(ids, seed)));
+        }
+        return toPositions(engine.closureOf(RelationKeyUtils.subsetOf(ids, seed)));
+    }
+
+    private long toPositions(long idMask) {
+        if (identity) {
+            return idMask;
+        }
+        long result = 0;
+        for (long m = idMask; m != 0; m &= m - 1) {
+            int id = Long.numberOfTrailingZeros(m);
+            if (id < positions.length && positions[id] >= 0) {
+                result |= 1L << positions[id];
+            }
+        }
+        return result;
+    }
+
+    private long toPositions(AttributeSet set) {
+        long result = 0;
+        for (int id = set.nextSetBit(0); id >= 0 && id < positions.length; id = set.nextSetBit(id + 1)) {
+            if (positions[id] >= 0) {
+                result |= 1L << positions[id];
+            }
+        }
+        return result;
+    }
+
+    private long get(long mask) {
+        return heap != null ? heap[(int) mask] : offHeap.get((int) mask);
+    }
+
+    private void set(long mask, long closure) {
+        if (heap != null) {
+            heap[(int) mask] = closure;
+        } else {
+            offHeap.put((int) mask, closure);
+        }
+    }
+
+    public Relation getRelation() {
+        return relation;
+    }
+
+    /**
+     * Number of attributes of the relation, i.e. the number of bits in a position mask.
+     */
+    public int getAttributeCount() {
+        return n;
+    }
+
+    /**
+     * Returns the closure of the subset with position mask 'mask', restricted to the relation.
+     */
+    public long closure(long mask) {
+        return get(mask);
+    }
+
+    /**
+     * Returns the closure of 'attributes', restricted to the relation. Ids outside the relation are ignored.
+     */
+    public AttributeSet closureOf(AttributeSet attributes) {
+        return toAttributeSet(get(toPositions(attributes)));
+    }
+
+    /**
+     * Converts attribute ids of the relation's universe into a position mask. Ids outside the relation are ignored.
+     */
+    public long toMask(AttributeSet attributes) {
+        return toPositions(attributes);
+    }
+
+    /**
+     * Converts a position mask back into attribute ids of the relation's universe.
+     */
+    public AttributeSet toAttributeSet(long mask) {
+        return RelationKeyUtils.subsetOf(ids, mask);
+    }
+}
@@ -0,0 +1,315 @@
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * A table read from a CSV file, with every column dictionary-encoded: each distinct value of a column gets
+ * an int code, numbered from 0 in order of first appearance, and the column is stored as one code per row.
+ * <p>
+ * The first record holds the column names. Fields may be quoted with '"', in which case they can contain the
+ * separator, new lines and doubled quotes. Empty lines are skipped and a '\r' before a new line is ignored.
+ * The file is memory-mapped {@value #CHUNK_SIZE} bytes at a time; a record cut off at the end of a chunk is
+ * parsed again from the start of the next one. Values are looked up in the dictionaries straight from their bytes,
+ * and only the first occurrence of a value is copied.
+ */
+public class CsvTable {
+    // Bytes mapped at a time; a single record must fit in one chunk
+    static final int CHUNK_SIZE = 1 << 26;
+
+    private final List<String> columnNames;
+    private final int[][] columns;
+    private final int[] distinctCounts;
+    private final int rowCount;
+
+    private CsvTable(List<String> columnNames, int[][] columns, int[] distinctCounts, int rowCount) {
+        this.columnNames = columnNames;
+        this.columns = columns;
+        this.distinctCounts = distinctCounts;
+        this.rowCount = rowCount;
+    }
+
+    public static CsvTable load(Path file) throws IOException {
+        return load(file, ',');
+    }
+
+    /**
+     * Reads 'file', with fields separated by 'separator'.
+     * @throws IOException if the file can't be read, or a record doesn't have one field per column
+     */
+    public static CsvTable load(Path file, char separator) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            Reader reader = new Reader(file, (byte) separator);
+            long size = channel.size();
+            long position = 0;
+            while (position < size) {
+                int length = (int) Math.min(CHUNK_SIZE, size - position);
+                MappedByteBuffer chunk = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+                int consumed = reader.parse(chunk, position + length == size);
+                if (consumed == 0) {
+                    throw new IOException(file + ": record at byte " + position + " is longer than " + CHUNK_SIZE + " bytes");
+                }
+                position += consumed;
+            }
+            return reader.finish();
+        }
+    }
+
+    public List<String> getColumnNames() {
+        return columnNames;
+    }
+
+    public int getColumnCount() {
+        return columns.length;
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * Returns the codes of column 'index', one per row. The array must not be modified.
+     */
+    public int[] getColumn(int index) {
+        return columns[index];
+    }
+
+    /**
+     * Number of distinct values in column 'index'; its codes are 0 up to this count.
+     */
+    public int getDistinctCount(int index) {
+        return distinctCounts[index];
+    }
+
+    /**
+     * Returns a relation named 'name' with one attribute per column.
+     */
+    public Relation toRelation(String name) {
+        Set<String> attributes = new TreeSet<>(columnNames);
+        if (attributes.size() != columnNames.size()) {
+            throw new IllegalArgumentException("Column names are not unique: " + columnNames);
+        }
+        return new Relation(name, attributes);
+    }
+
+    @Override
+    public String toString() {
+        return "CsvTable{" +
+                "columns=" + columnNames +
+                ", rows=" + rowCount +
+                '}';
+    }
+
+    /**
+     * Parser state carried from one chunk to the next.
+     */
+    private static class Reader {
+        private final Path file;
+        private final byte separator;
+        private List<String> header;
+        private ValueDictionary[] dictionaries;
+        private int[][] columns;
+        private int rows;
+        private long line = 1;
+        // Unescaped bytes of the field being read
+        private byte[] field = new byte[256];
+        private int fieldLength;
+        // Codes of the record being read
+        private int[] record = new int[16];
+        // Column names, while the first record is read
+        private List<String> names = new ArrayList<>();
+        private int fieldCount;
+
+        private Reader(Path file, byte separator) {
+            this.file = file;
+            this.separator = separator;
+        }
+
+        /**
+         * Parses the complete records in 'chunk'. Unless 'last', a record running up to the end of the chunk is left
+         * for the next one.
+         * @return number of bytes consumed, i.e. the offset just past the last complete record
+         */
+        private int parse(MappedByteBuffer chunk, boolean last) throws IOException {
+            int limit = chunk.limit();
+            int recordStart = 0;
+            long recordLine = line;
+            int i = 0;
+            fieldCount = 0;
+            fieldLength = 0;
+            if (header == null) {
+                names.clear();
+            }
+            boolean quoted = false;
+            boolean fieldStart = true;
+            while (i < limit) {
+                byte b = chunk.get(i++);
+                if (quoted) {
+                    if (b != '"') {
+                        if (b == '\n') line++;
+                        append(b);
+                    } else if (i < limit && chunk.get(i) == '"') {
+                        append(b);
+                        i++;
+                    } else if (i == limit && !last) {
+                        // Can't tell a closing quote from the first half of an escaped one
+                        break;
+                    } else {
+                        quoted = false;
+                    }
+                } else if (b == '"' && fieldStart) {
+                    quoted = true;
+                    fieldStart = false;
+                } else if (b == separator) {
+                    endField();
+                    fieldStart = true;
+                } else if (b == '\n') {
+                    line++;
+                    endRecord(recordLine);
+                    fieldStart = true;
+                    recordStart = i;
+                    recordLine = line;
+                } else if (b != '\r' || (i < limit && chunk.get(i) != '\n')) {
+                    append(b);
+                    fieldStart = false;
+                }
+            }
+            if (last) {
+                if (quoted) {
+                    throw new IOException(file + ":" + recordLine + ": unterminated quoted field");
+                }
+                endRecord(recordLine);
+                return limit;
+            }
+            // Drop the incomplete record; it is read again from the start of the next chunk
+            line = recordLine;
+            return recordStart;
+        }
+
+        private void append(byte b) {
+            if (fieldLength == field.length) {
+                field = Arrays.copyOf(field, field.length * 2);
+            }
+            field[fieldLength++] = b;
+        }
+
+        private void endField() throws IOException {
+            if (header == null) {
+                names.add(new String(field, 0, fieldLength, StandardCharsets.UTF_8));
+            } else {
+                if (fieldCount == columns.length) {
+                    throw new IOException(file + ":" + line + ": more than " + columns.length + " fields");
+                }
+                record[fieldCount] = dictionaries[fieldCount].code(field, fieldLength);
+            }
+            fieldCount++;
+            fieldLength = 0;
+        }
+
+        private void endRecord(long recordLine) throws IOException {
+            if (fieldCount == 0 && fieldLength == 0) {
+                // Empty line
+                return;
+            }
+            endField();
+            if (header == null) {
+                startColumns();
+            } else {
+                if (fieldCount != columns.length) {
+                    throw new IOException(file + ":" + recordLine + ": " + fieldCount + " fields, expected " + columns.length);
+                }
+                if (rows == columns[0].length) {
+                    for (int c = 0; c < columns.length; c++) {
+                        columns[c] = Arrays.copyOf(columns[c], rows * 2);
+                    }
+                }
+                for (int c = 0; c < columns.length; c++) {
+                    columns[c][rows] = record[c];
+                }
+                rows++;
+            }
+            fieldCount = 0;
+        }
+
+        private void startColumns() {
+            header = List.copyOf(names);
+            names = null;
+            int n = header.size();
+            dictionaries = new ValueDictionary[n];
+            columns = new int[n][1024];
+            for (int c = 0; c < n; c++) {
+                dictionaries[c] = new ValueDictionary();
+            }
+            record = new int[n];
+        }
+
+        private CsvTable finish() throws IOException {
+            if (header == null) {
+                throw new IOException(file + ": no header");
+            }
+            int[] distinct = new int[columns.length];
+            for (int c = 0; c < columns.length; c++) {
+                columns[c] = Arrays.copyOf(columns[c], rows);
+                distinct[c] = dictionaries[c].size();
+            }
+            return new CsvTable(header, columns, distinct, rows);
+        }
+    }
+
+    /**
+     * Open-addressing map from the bytes of a value to its code.
+     */
+    private static class ValueDictionary {
+        private byte[][] values = new byte[16][];
+        private int[] hashes = new int[16];
+        // Slot -> code + 1, 0 for an empty slot
+        private int[] slots = new int[32];
+        private int size;
+
+        private int code(byte[] bytes, int length) {
+            int hash = 1;
+            for (int i = 0; i < length; i++) {
+                hash = 31 * hash + bytes[i];
+            }
+            int mask = slots.length - 1;
+            int slot = (hash ^ (hash >>> 16)) & mask;
+            for (; slots[slot] != 0; slot = (slot + 1) & mask) {
+                int code = slots[slot] - 1;
+                if (hashes[code] == hash && Arrays.equals(values[code], 0, values[code].length, bytes, 0, length)) {
+                    return code;
+                }
+            }
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+                hashes = Arrays.copyOf(hashes, size * 2);
+            }
+            values[size] = Arrays.copyOf(bytes, length);
+            hashes[size] = hash;
+            slots[slot] = size + 1;
+            size++;
+            if (2 * size > slots.length) {
+                // Keep the table at most half full
+                slots = new int[slots.length * 2];
+                for (int code = 0; code < size; code++) {
+                    int s = (hashes[code] ^ (hashes[code] >>> 16)) & (slots.length - 1);
+                    while (slots[s] != 0) {
+                        s = (s + 1) & (slots.length - 1);
+                    }
+                    slots[s] = code + 1;
+                }
+            }
+            return size - 1;
+        }
+
+        private int size() {
+            return size;
+        }
+    }
+}
@@ -0,0 +1,43 @@
+import java.util.List;
+
+/**
+ * Outcome of {@link DecompositionVerifier#verify}: whether a decomposition is a lossless join, and which
+ * FDs it fails to preserve.
+ */
+public class DecompositionReport {
+    private final boolean lossless;
+    private final List<FunctionalDependency> lostDependencies;
+
+    public DecompositionReport(boolean lossless, List<FunctionalDependency> lostDependencies) {
+        this.lossless = lossless;
+        this.lostDependencies = List.copyOf(lostDependencies);
+    }
+
+    /**
+     * Returns true if joining the sub-relations always gives back exactly the original relation.
+     */
+    public boolean isLossless() {
+        return lossless;
+    }
+
+    public boolean isDependencyPreserving() {
+        return lostDependencies.isEmpty();
+    }
+
+    /**
+     * Returns the FDs that can't be enforced within the sub-relations. Each FD is X -> Y where Y is only the part
+     * of the original right side that is lost, so the list is empty for a dependency-preserving decomposition.
+     */
+    public List<FunctionalDependency> getLostDependencies() {
+        return lostDependencies;
+    }
+
+    @Override
+    public String toString() {
+        return "DecompositionReport{" +
+                "lossless=" + lossless +
+                ", dependencyPreserving=" + isDependencyPreserving() +
+                ", lostDependencies=" + lostDependencies +
+                '}';
+    }
+}
@@ -0,0 +1,345 @@
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Checks that a decomposition of a relation is a lossless join and preserves its FDs, in polynomial time,
+ * so it is cheap enough to run on every decomposition.
+ * <p>
+ * Lossless join is decided with the tableau chase. The tableau has one row per sub-relation and one column per
+ * attribute; a row starts distinguished in the columns of its sub-relation. Instead of writing symbols into
+ * cells, each column keeps a union-find over the rows, so two cells hold the same symbol when their rows are in
+ * the same class, and a class is either distinguished or not. The distinguished columns of each row are kept as
+ * an {@link AttributeSet}. FDs are applied from a worklist: merging classes in a column only queues the FDs whose
+ * left side contains that column, so an FD is re-applied only when rows may newly agree on its left side.
+ * The join is lossless once some row is distinguished on every attribute of the relation.
+ * <p>
+ * Dependency preservation uses the restricted closure algorithm: for each FD X -> Y, grow Z = X by
+ * (Z &cap; Ri)+ &cap; Ri over the sub-relations Ri until nothing changes; the FD is preserved iff Y &sube; Z.
+ * This takes closures under the original FDs only and never projects them onto subsets of the sub-relations.
+ */
+public class DecompositionVerifier {
+
+    /**
+     * Checks 'decomposition' of 'relation' for both properties.
+     * The sub-relations may have universes of their own; attributes are matched by name.
+     * @throws IllegalArgumentException if a sub-relation has an attribute that is not in 'relation'
+     */
+    public static DecompositionReport verify(Relation relation, List<FunctionalDependency> fds, List<Relation> decomposition) {
+        AnalysisListener listener = AnalysisListener.shared();
+        long start = listener.phaseStarted(AnalysisPhase.DECOMPOSITION_CHECK);
+        try {
+            AttributeSet[] parts = toParts(relation, decomposition);
+            // One closure per projected subset, which other analyses rarely ask for, so the shared cache is skipped
+            ClosureEngine engine = ClosureEngine.prepare(relation.getUniverse(), fds, null);
+            return new DecompositionReport(chase(relation, engine, parts), lostDependencies(relation, engine, parts));
+        } finally {
+            listener.phaseFinished(AnalysisPhase.DECOMPOSITION_CHECK, start);
+        }
+    }
+
+    public static boolean isLosslessJoin(Relation relation, List<FunctionalDependency> fds, List<Relation> decomposition) {
+        AttributeSet[] parts = toParts(relation, decomposition);
+        return chase(relation, ClosureEngine.prepare(relation.getUniverse(), fds, null), parts);
+    }
+
+    public static boolean isDependencyPreserving(Relation relation, List<FunctionalDependency> fds, List<Relation> decomposition) {
+        AttributeSet[] parts = toParts(relation, decomposition);
+        return lostDependencies(relation, ClosureEngine.prepare(relation.getUniverse(), fds, null), parts).isEmpty();
+    }
+
+    // Attribute sets of the sub-relations, as ids of the relation's universe
+    private static AttributeSet[] toParts(Relation relation, List<Relation> decomposition) {
+        AttributeUniverse universe = relation.getUniverse();
+        AttributeSet[] parts = new AttributeSet[decomposition.size()];
+        for (int i = 0; i < parts.length; i++) {
+            Relation part = decomposition.get(i);
+            parts[i] = part.getUniverse() == universe ? part.getAttributeSet() : idsOf(relation, part);
+            if (!relation.getAttributeSet().containsAll(parts[i])) {
+                throw new IllegalArgumentException("Relation " + part.getName() + " has attributes outside of "
+                        + relation.getName() + ": " + universe.toNames(parts[i].difference(relation.getAttributeSet())));
+            }
+        }
+        return parts;
+    }
+
+    /**
+     * Looks up the attributes of 'part' in the universe of 'relation' without interning, so that a part with
+     * foreign attributes is rejected without growing a universe other threads may be reading.
+     */
+    private static AttributeSet idsOf(Relation relation, Relation part) {
+        AttributeUniverse universe = relation.getUniverse();
+        AttributeSet ids = AttributeSet.empty(universe.size());
+        for (String attribute : part.getAttributes()) {
+            int id = universe.idOf(attribute);
+            if (id < 0) {
+                throw new IllegalArgumentException("Relation " + part.getName() + " has attributes outside of "
+                        + relation.getName() + ": [" + attribute + "]");
+            }
+            ids.add(id);
+        }
+        return ids;
+    }
+
+    /**
+     * Runs the chase and returns true if some row ends up distinguished on all of the relation's attributes.
+     * FDs may mention attributes outside the relation; those get columns that start out non-distinguished in every
+     * row, which makes the chase use everything the FDs imply on the relation, not only the FDs written within it.
+     */
+    private static boolean chase(Relation relation, ClosureEngine engine, AttributeSet[] parts) {
+        AttributeUniverse universe = engine.getUniverse();
+        List<FunctionalDependency> fds = engine.getFunctionalDependencies();
+        AttributeSet target = relation.getAttributeSet();
+        int rows = parts.length;
+        int columns = universe.size();
+        if (rows == 0) {
+            return false;
+        }
+
+        //Step 1: per column, the rows containing the attribute share the distinguished symbol, every other cell is unique
+        Tableau tableau = new Tableau(rows, columns);
+        for (int r = 0; r < rows; r++) {
+            AttributeSet part = parts[r];
+            for (int c = part.nextSetBit(0); c >= 0; c = part.nextSetBit(c + 1)) {
+                tableau.distinguish(c, r);
+            }
+        }
+        if (tableau.hasRowCovering(target)) {
+            return true;
+        }
+
+        //Step 2: index the FDs by the columns of their left sides
+        int m = fds.size();
+        int[][] lhs = new int[m][];
+        int[][] rhs = new int[m][];
+        List<List<Integer>> byColumn = new ArrayList<>(columns);
+        for (int c = 0; c < columns; c++) {
+            byColumn.add(new ArrayList<>());
+        }
+        for (int i = 0; i < m; i++) {
+            lhs[i] = fds.get(i).getLeftSet(universe).toArray();
+            rhs[i] = fds.get(i).getRightSet(universe).toArray();
+            for (int c : lhs[i]) {
+                byColumn.get(c).add(i);
+            }
+        }
+
+        //Step 3: apply FDs until no FD makes two rows agree on more columns
+        ArrayDeque<Integer> worklist = new ArrayDeque<>(m);
+        boolean[] queued = new boolean[m];
+        for (int i = 0; i < m; i++) {
+            worklist.add(i);
+            queued[i] = true;
+        }
+        Map<RowKey, Integer> groups = new HashMap<>();
+        while (!worklist.isEmpty()) {
+            int fd = worklist.poll();
+            queued[fd] = false;
+            groups.clear();
+            boolean merged = false;
+            for (int r = 0; r < rows; r++) {
+                int[] roots = new int[lhs[fd].length];
+                for (int j = 0; j < roots.length; j++) {
+                    roots[j] = tableau.find(lhs[fd][j], r);
+                }
+                Integer first = groups.putIfAbsent(new RowKey(roots), r);
+                if (first == null) {
+                    continue;
+                }
+                // Rows 'first' and 'r' agree on the left side, so they must agree on the right side too
+                for (int c : rhs[fd]) {
+                    if (tableau.union(c, first, r)) {
+                        for (int next : byColumn.get(c)) {
+                            if (!queued[next]) {
+                                queued[next] = true;
+                                worklist.add(next);
+                            }
+                        }
+                        merged = true;
+                    }
+                }
+            }
+            // A merge can distinguish every row of the merged class, not only 'first' and 'r'
+            if (merged && tableau.hasRowCovering(target)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the part of each FD that the restricted closure over 'parts' doesn't reach.
+     * Only attributes of the relation count: FDs whose left side leaves the relation are skipped, and right sides
+     * are cut down to the relation.
+     */
+    private static List<FunctionalDependency> lostDependencies(Relation relation, ClosureEngine engine, AttributeSet[] parts) {
+        AttributeUniverse universe = engine.getUniverse();
+        AttributeSet attributes = relation.getAttributeSet();
+        boolean masks = engine.fitsInMask() && attributes.nextSetBit(64) < 0;
+        long[] partMasks = new long[parts.length];
+        if (masks) {
+            for (int i = 0; i < parts.length; i++) {
+                partMasks[i] = parts[i].toMask();
+            }
+        }
+        List<FunctionalDependency> lost = new ArrayList<>();
+        for (FunctionalDependency fd : engine.getFunctionalDependencies()) {
+            AttributeSet left = fd.getLeftSet(universe);
+            if (!attributes.containsAll(left)) {
+                continue;
+            }
+            AttributeSet wanted = fd.getRightSet(universe).intersection(attributes);
+            wanted.removeAll(left);
+            if (wanted.isEmpty()) {
+                continue;
+            }
+            AttributeSet reached = masks
+                    ? AttributeSet.ofMask(restrictedClosure(engine, partMasks, left.toMask(), wanted.toMask()))
+                    : restrictedClosure(engine, parts, left, wanted);
+            if (!reached.containsAll(wanted)) {
+                lost.add(new FunctionalDependency(universe, left, wanted.difference(reached)));
+            }
+        }
+        return lost;
+    }
+
+    private static long restrictedClosure(ClosureEngine engine, long[] parts, long start, long wanted) {
+        long z = start;
+        boolean changed = true;
+        while (changed && (wanted & ~z) != 0) {
+            changed = false;
+            for (long part : parts) {
+                long grown = z | (engine.closure(z & part) & part);
+                if (grown != z) {
+                    z = grown;
+                    changed = true;
+                }
+            }
+        }
+        return z;
+    }
+
+    private static AttributeSet restrictedClosure(ClosureEngine engine, AttributeSet[] parts, AttributeSet start, AttributeSet wanted) {
+        AttributeSet z = start.copy();
+        boolean changed = true;
+        while (changed && !z.containsAll(wanted)) {
+            changed = false;
+            for (AttributeSet part : parts) {
+                AttributeSet derived = engine.closureOf(z.intersection(part)).intersection(part);
+                changed |= z.addAll(derived);
+            }
+        }
+        return z;
+    }
+
+    /**
+     * Chase tableau: a union-find over the rows for every column, with the distinguished columns of each row.
+     * Each class is also a circular list of its rows, so a class that becomes distinguished can mark its rows.
+     */
+    private static class Tableau {
+        private final int[][] parent;
+        private final int[][] next;
+        private final boolean[][] distinguishedRoot;
+        // A row holding the distinguished symbol of each column, or -1 if no row has it yet
+        private final int[] distinguishedClass;
+        private final AttributeSet[] distinguished;
+
+        private Tableau(int rows, int columns) {
+            this.parent = new int[columns][rows];
+            this.next = new int[columns][rows];
+            this.distinguishedRoot = new boolean[columns][rows];
+            this.distinguishedClass = new int[columns];
+            Arrays.fill(distinguishedClass, -1);
+            this.distinguished = new AttributeSet[rows];
+            for (int c = 0; c < columns; c++) {
+                for (int r = 0; r < rows; r++) {
+                    parent[c][r] = r;
+                    next[c][r] = r;
+                }
+            }
+            for (int r = 0; r < rows; r++) {
+                distinguished[r] = AttributeSet.empty(columns);
+            }
+        }
+
+        // Gives row 'r' the distinguished symbol of column 'c'
+        private void distinguish(int c, int r) {
+            if (distinguishedClass[c] < 0) {
+                distinguishedClass[c] = r;
+                distinguishedRoot[c][r] = true;
+                distinguished[r].add(c);
+            } else {
+                union(c, distinguishedClass[c], r);
+            }
+        }
+
+        private int find(int c, int r) {
+            int[] p = parent[c];
+            while (p[r] != r) {
+                p[r] = p[p[r]];
+                r = p[r];
+            }
+            return r;
+        }
+
+        private boolean hasRowCovering(AttributeSet attributes) {
+            for (AttributeSet row : distinguished) {
+                if (row.containsAll(attributes)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        // Merges the classes of rows 'a' and 'b' in column 'c'. Returns false if they were already the same symbol
+        private boolean union(int c, int a, int b) {
+            int x = find(c, a);
+            int y = find(c, b);
+            if (x == y) {
+                return false;
+            }
+            boolean dx = distinguishedRoot[c][x];
+            boolean dy = distinguishedRoot[c][y];
+            if (dx != dy) {
+                // The merged symbol is the distinguished one, so every row of the other class becomes distinguished
+                int plain = dx ? y : x;
+                int r = plain;
+                do {
+                    distinguished[r].add(c);
+                    r = next[c][r];
+                } while (r != plain);
+            }
+            parent[c][y] = x;
+            distinguishedRoot[c][x] = dx || dy;
+            // Splice the two circular lists
+            int swap = next[c][x];
+            next[c][x] = next[c][y];
+            next[c][y] = swap;
+            return true;
+        }
+    }
+
+    // Left side symbols of one row, compared by value
+    private static class RowKey {
+        private final int[] roots;
+        private final int hash;
+
+        private RowKey(int[] roots) {
+            this.roots = roots;
+            this.hash = Arrays.hashCode(roots);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof RowKey other && hash == other.hash && Arrays.equals(roots, other.roots);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
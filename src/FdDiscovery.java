@@ -0,0 +1,494 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
+
+/**
+ * Discovers the minimal non-trivial FDs that hold on the rows of a {@link CsvTable}, using the TANE algorithm
+ * (Huhtala, Kärkkäinen, Porkka &amp; Toivonen).
+ * <p>
+ * Attribute sets are visited level by level, smallest first. Every set X keeps the stripped partition of the rows
+ * by their values on X: the groups of two or more rows that agree on X. X \ {A} -> A holds exactly when the
+ * partitions of X \ {A} and X have the same error (rows in groups minus number of groups), and the partition
+ * of X u Y is the product of the partitions of X and Y, computed in time linear in their size.
+ * Every set also keeps the right sides C+(X) that can still give a minimal FD; a set whose C+ becomes empty,
+ * or that is a key, is pruned together with all its supersets.
+ * <p>
+ * The sets of a level are processed in parallel. The FDs are returned one right side attribute each, ordered by
+ * left side size, and can be passed straight to {@link RelationKeyUtils} and the normal form utils.
+ */
+public class FdDiscovery {
+    // Columns are tracked as bits of a long
+    public static final int MAX_COLUMNS = 63;
+
+    /**
+     * Usage: FdDiscovery file.csv [separator]
+     * Prints the FDs found in the file, then its candidate keys and normal forms.
+     */
+    public static void main(String[] args) throws IOException {
+        Path file = Path.of(args[0]);
+        char separator = args.length > 1 ? args[1].charAt(0) : ',';
+        CsvTable table = CsvTable.load(file, separator);
+        System.out.println("Loaded: " + table);
+
+        Relation relation = table.toRelation(relationName(file));
+        List<FunctionalDependency> fds = discover(table, relation.getUniverse());
+        System.out.println("Discovered FDs:");
+        for (FunctionalDependency fd : fds) {
+            System.out.println("  " + fd);
+        }
+        System.out.println("Candidate Keys: " + RelationKeyUtils.getCandidateKeys(relation, fds));
+        System.out.println("BCNF: " + BCNFUtils.isInBCNF(relation, fds));
+        System.out.println("3NF: " + ThirdNFUtils.isIn3NF(relation, fds));
+    }
+
+    /**
+     * Loads 'file' and returns it as a relation named after the file, with the FDs that hold on its rows.
+     */
+    public static Schema discover(Path file) throws IOException {
+        CsvTable table = CsvTable.load(file);
+        Relation relation = table.toRelation(relationName(file));
+        return new Schema(relation, discover(table, relation.getUniverse()));
+    }
+
+    private static String relationName(Path file) {
+        String name = file.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return dot > 0 ? name.substring(0, dot) : name;
+    }
+
+    /**
+     * Returns the minimal non-trivial FDs of 'table', with columns bound to attributes of the same name in 'universe'.
+     */
+    public static List<FunctionalDependency> discover(CsvTable table, AttributeUniverse universe) {
+        return discover(table, universe, ForkJoinPool.commonPool(), AnalysisBudget.unlimited()).getValue();
+    }
+
+    public static List<FunctionalDependency> discover(CsvTable table, AttributeUniverse universe, ForkJoinPool pool) {
+        return discover(table, universe, pool, AnalysisBudget.unlimited()).getValue();
+    }
+
+    /**
+     * Same as {@link #discover(CsvTable, AttributeUniverse, ForkJoinPool)}, but stops once 'budget' runs out.
+     * Every attribute set of the lattice counts as a visited subset. A partial result holds the FDs found on the
+     * levels completed so far: each of them holds and is minimal, but FDs with larger left sides are missing.
+     */
+    public static PartialResult<List<FunctionalDependency>> discover(CsvTable table, AttributeUniverse universe, ForkJoinPool pool, AnalysisBudget budget) {
+        AnalysisListener listener = AnalysisListener.shared();
+        long start = listener.phaseStarted(AnalysisPhase.FD_DISCOVERY);
+        try {
+            int n = table.getColumnCount();
+            if (n > MAX_COLUMNS) {
+                throw new IllegalArgumentException("Table has " + n + " columns, FD discovery supports at most " + MAX_COLUMNS);
+            }
+            if (new HashSet<>(table.getColumnNames()).size() != n) {
+                throw new IllegalArgumentException("Column names are not unique: " + table.getColumnNames());
+            }
+            Lattice lattice = new Lattice(table);
+            lattice.run(pool, budget, listener);
+            return budget.result(lattice.toFunctionalDependencies(universe));
+        } finally {
+            listener.phaseFinished(AnalysisPhase.FD_DISCOVERY, start);
+        }
+    }
+
+    /**
+     * One attribute set of the lattice, with its partition, its candidate right sides, and the FDs found for it.
+     */
+    private static class Node {
+        private final long mask;
+        // Nodes whose partitions are multiplied into this one; cleared once that is done so old levels can be freed
+        private Node first;
+        private Node second;
+        private Partition partition;
+        private long rhsCandidates;
+        // Pairs of (left side mask, right side column) found while processing this node
+        private long[] found = new long[0];
+
+        private Node(long mask, Partition partition) {
+            this.mask = mask;
+            this.partition = partition;
+        }
+
+        // A node whose partition is the product of the partitions of 'first' and 'second'
+        private Node(long mask, Node first, Node second) {
+            this.mask = mask;
+            this.first = first;
+            this.second = second;
+        }
+
+        private void addFd(long left, int right) {
+            found = Arrays.copyOf(found, found.length + 2);
+            found[found.length - 2] = left;
+            found[found.length - 1] = right;
+        }
+    }
+
+    private static class Lattice {
+        private final CsvTable table;
+        private final int n;
+        private final long all;
+        private final int rows;
+        // Work arrays for partition products, one per thread that is computing one
+        private final ConcurrentLinkedQueue<Partition.Scratch> scratches = new ConcurrentLinkedQueue<>();
+        private final List<long[]> fds = new ArrayList<>();
+
+        private Lattice(CsvTable table) {
+            this.table = table;
+            this.n = table.getColumnCount();
+            this.all = (1L << n) - 1;
+            this.rows = table.getRowCount();
+        }
+
+        private void run(ForkJoinPool pool, AnalysisBudget budget, AnalysisListener listener) {
+            //Step 1: level 0 is the empty set, which puts all rows in one group; level 1 is one column each
+            Node empty = new Node(0, Partition.ofAll(table.getRowCount()));
+            empty.rhsCandidates = all;
+            Map<Long, Node> previous = new HashMap<>();
+            previous.put(0L, empty);
+            List<Node> level = new ArrayList<>(n);
+            for (int c = 0; c < n && budget.visit(); c++) {
+                level.add(new Node(1L << c, null));
+            }
+            forEach(pool, level, node -> node.partition = Partition.ofColumn(table.getColumn(Long.numberOfTrailingZeros(node.mask)),
+                    table.getDistinctCount(Long.numberOfTrailingZeros(node.mask))));
+            long visited = level.size();
+
+            while (!level.isEmpty() && budget.getStopReason() == null) {
+                //Step 2: find the FDs X \ {A} -> A of this level, then prune sets that can't give minimal FDs
+                Map<Long, Node> parents = previous;
+                forEach(pool, level, node -> computeDependencies(node, parents));
+                forEach(pool, level, node -> prune(node, parents));
+                Map<Long, Node> current = new HashMap<>();
+                for (Node node : level) {
+                    for (int i = 0; i < node.found.length; i += 2) {
+                        fds.add(new long[]{node.found[i], node.found[i + 1]});
+                    }
+                    if (node.rhsCandidates != 0) {
+                        current.put(node.mask, node);
+                    }
+                }
+                if (budget.isExhausted()) {
+                    break;
+                }
+
+                //Step 3: the next level joins sets that differ in their highest column only, if all their subsets survived
+                List<Node> next = generateNextLevel(current, budget);
+                if (budget.getStopReason() != null) {
+                    break;
+                }
+                forEach(pool, next, this::computePartition);
+                visited += next.size();
+                previous = current;
+                level = next;
+            }
+            listener.subsetsVisited(visited);
+        }
+
+        private void computePartition(Node node) {
+            Partition.Scratch scratch = scratches.poll();
+            if (scratch == null) {
+                scratch = new Partition.Scratch(rows);
+            }
+            try {
+                node.partition = node.first.partition.product(node.second.partition, scratch);
+                node.first = null;
+                node.second = null;
+            } finally {
+                scratches.add(scratch);
+            }
+        }
+
+        // C+(X) is the intersection of C+(X \ {A}); X \ {A} -> A holds if both partitions have the same error
+        private void computeDependencies(Node node, Map<Long, Node> parents) {
+            long candidates = all;
+            for (long m = node.mask; m != 0; m &= m - 1) {
+                candidates &= parents.get(node.mask & ~Long.lowestOneBit(m)).rhsCandidates;
+            }
+            for (long m = node.mask & candidates; m != 0; m &= m - 1) {
+                long bit = Long.lowestOneBit(m);
+                Node parent = parents.get(node.mask & ~bit);
+                if (parent.partition.error() == node.partition.error()) {
+                    node.addFd(node.mask & ~bit, Long.numberOfTrailingZeros(bit));
+                    candidates &= ~bit;
+                    // X \ {A} already determines all of X, so no FD with X on the left side is minimal
+                    candidates &= node.mask;
+                }
+            }
+            node.rhsCandidates = candidates;
+        }
+
+        // A key is dropped from the lattice, so the FDs X -> A it would have given on the next level are found here
+        private void prune(Node node, Map<Long, Node> parents) {
+            if (node.rhsCandidates == 0 || node.partition.error() != 0) {
+                return;
+            }
+            for (long m = node.rhsCandidates & ~node.mask; m != 0; m &= m - 1) {
+                int right = Long.numberOfTrailingZeros(m);
+                boolean minimal = true;
+                for (long b = node.mask; b != 0 && minimal; b &= b - 1) {
+                    Node parent = parents.get(node.mask & ~Long.lowestOneBit(b));
+                    minimal = !parent.partition.refines(table.getColumn(right));
+                }
+                if (minimal) {
+                    node.addFd(node.mask, right);
+                }
+            }
+            node.rhsCandidates = 0;
+        }
+
+        private List<Node> generateNextLevel(Map<Long, Node> current, AnalysisBudget budget) {
+            // Group by prefix, i.e. the set without its highest column
+            Map<Long, List<Node>> blocks = new HashMap<>();
+            List<Node> sorted = new ArrayList<>(current.values());
+            sorted.sort((a, b) -> Long.compare(a.mask, b.mask));
+            for (Node node : sorted) {
+                blocks.computeIfAbsent(node.mask & ~Long.highestOneBit(node.mask), k -> new ArrayList<>()).add(node);
+            }
+            List<Node> next = new ArrayList<>();
+            for (Node node : sorted) {
+                List<Node> block = blocks.get(node.mask & ~Long.highestOneBit(node.mask));
+                for (Node other : block) {
+                    if (other.mask <= node.mask) {
+                        continue;
+                    }
+                    long union = node.mask | other.mask;
+                    if (allSubsetsPresent(union, current)) {
+                        if (!budget.visit()) {
+                            return next;
+                        }
+                        next.add(new Node(union, node, other));
+                    }
+                }
+            }
+            return next;
+        }
+
+        private static boolean allSubsetsPresent(long mask, Map<Long, Node> current) {
+            for (long m = mask; m != 0; m &= m - 1) {
+                if (!current.containsKey(mask & ~Long.lowestOneBit(m))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private List<FunctionalDependency> toFunctionalDependencies(AttributeUniverse universe) {
+            int[] ids = new int[n];
+            for (int c = 0; c < n; c++) {
+                ids[c] = universe.intern(table.getColumnNames().get(c));
+            }
+            fds.sort((a, b) -> {
+                int bySize = Integer.compare(Long.bitCount(a[0]), Long.bitCount(b[0]));
+                if (bySize != 0) return bySize;
+                int byLeft = Long.compare(a[0], b[0]);
+                return byLeft != 0 ? byLeft : Long.compare(a[1], b[1]);
+            });
+            List<FunctionalDependency> result = new ArrayList<>(fds.size());
+            for (long[] fd : fds) {
+                AttributeSet right = AttributeSet.of(ids[(int) fd[1]]);
+                result.add(new FunctionalDependency(universe, RelationKeyUtils.subsetOf(ids, fd[0]), right));
+            }
+            return result;
+        }
+    }
+
+    // Runs 'action' on every item as fork/join tasks on 'pool'
+    private static <T> void forEach(ForkJoinPool pool, List<T> items, Consumer<T> action) {
+        pool.invoke(new ForEachTask<>(items, 0, items.size(), action));
+    }
+
+    @SuppressWarnings("serial")
+    private static class ForEachTask<T> extends RecursiveAction {
+        private final List<T> items;
+        private final int from;
+        private final int to;
+        private final Consumer<T> action;
+
+        private ForEachTask(List<T> items, int from, int to, Consumer<T> action) {
+            this.items = items;
+            this.from = from;
+            this.to = to;
+            this.action = action;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= 1) {
+                if (to > from) {
+                    action.accept(items.get(from));
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new ForEachTask<>(items, from, middle, action), new ForEachTask<>(items, middle, to, action));
+        }
+    }
+
+    /**
+     * Stripped partition: the groups of at least two rows that agree on an attribute set, stored back to back.
+     */
+    private static class Partition {
+        private final int[] rows;
+        // Group i is rows[starts[i]] up to rows[starts[i + 1]]
+        private final int[] starts;
+
+        private Partition(int[] rows, int[] starts) {
+            this.rows = rows;
+            this.starts = starts;
+        }
+
+        private static Partition ofAll(int rowCount) {
+            if (rowCount < 2) {
+                return new Partition(new int[0], new int[]{0});
+            }
+            int[] rows = new int[rowCount];
+            for (int i = 0; i < rowCount; i++) {
+                rows[i] = i;
+            }
+            return new Partition(rows, new int[]{0, rowCount});
+        }
+
+        // Groups the rows by code with a counting sort, dropping codes that occur once
+        private static Partition ofColumn(int[] codes, int distinct) {
+            int[] counts = new int[distinct];
+            for (int code : codes) {
+                counts[code]++;
+            }
+            int[] offsets = new int[distinct];
+            int total = 0;
+            int groups = 0;
+            for (int code = 0; code < distinct; code++) {
+                if (counts[code] >= 2) {
+                    offsets[code] = total;
+                    total += counts[code];
+                    groups++;
+                } else {
+                    offsets[code] = -1;
+                }
+            }
+            int[] rows = new int[total];
+            int[] starts = new int[groups + 1];
+            int g = 0;
+            for (int code = 0; code < distinct; code++) {
+                if (offsets[code] >= 0) {
+                    starts[g++] = offsets[code];
+                }
+            }
+            starts[groups] = total;
+            for (int row = 0; row < codes.length; row++) {
+                int code = codes[row];
+                if (offsets[code] >= 0) {
+                    rows[offsets[code]++] = row;
+                }
+            }
+            return new Partition(rows, starts);
+        }
+
+        private int groupCount() {
+            return starts.length - 1;
+        }
+
+        // Rows in groups minus the number of groups; 0 means the attribute set is a key
+        private long error() {
+            return rows.length - groupCount();
+        }
+
+        // Returns true if the rows of every group have the same code, i.e. the attribute set determines the column
+        private boolean refines(int[] codes) {
+            for (int g = 0; g < groupCount(); g++) {
+                int code = codes[rows[starts[g]]];
+                for (int i = starts[g] + 1; i < starts[g + 1]; i++) {
+                    if (codes[rows[i]] != code) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Returns the partition of the union of both attribute sets: rows that share a group in both partitions.
+         * Each row of this partition is tagged with its group, then the rows of every group of 'other' are
+         * split by tag using per-tag linked lists.
+         */
+        private Partition product(Partition other, Scratch scratch) {
+            int[] tag = scratch.tag;
+            int[] next = scratch.next;
+            int[] head = scratch.head;
+            int[] count = scratch.count;
+            int[] touched = scratch.touched;
+            for (int g = 0; g < groupCount(); g++) {
+                for (int i = starts[g]; i < starts[g + 1]; i++) {
+                    tag[rows[i]] = g;
+                }
+            }
+            int[] resultRows = new int[Math.min(rows.length, other.rows.length)];
+            int[] resultStarts = new int[resultRows.length / 2 + 1];
+            int size = 0;
+            int groups = 0;
+            for (int g = 0; g < other.groupCount(); g++) {
+                int touchedCount = 0;
+                for (int i = other.starts[g]; i < other.starts[g + 1]; i++) {
+                    int row = other.rows[i];
+                    int t = tag[row];
+                    if (t < 0) {
+                        continue;
+                    }
+                    if (count[t] == 0) {
+                        touched[touchedCount++] = t;
+                        next[row] = -1;
+                    } else {
+                        next[row] = head[t];
+                    }
+                    head[t] = row;
+                    count[t]++;
+                }
+                for (int k = 0; k < touchedCount; k++) {
+                    int t = touched[k];
+                    if (count[t] >= 2) {
+                        resultStarts[groups++] = size;
+                        for (int row = head[t]; row >= 0; row = next[row]) {
+                            resultRows[size++] = row;
+                        }
+                    }
+                    count[t] = 0;
+                }
+            }
+            resultStarts[groups] = size;
+            for (int row : rows) {
+                tag[row] = -1;
+            }
+            return new Partition(Arrays.copyOf(resultRows, size), Arrays.copyOf(resultStarts, groups + 1));
+        }
+
+        /**
+         * Per-thread work arrays for {@link #product}, sized by the row count. 'tag' is all -1 and 'count' all 0
+         * between products.
+         */
+        private static class Scratch {
+            private final int[] tag;
+            private final int[] next;
+            private final int[] head;
+            private final int[] count;
+            private final int[] touched;
+
+            private Scratch(int rows) {
+                this.tag = new int[rows];
+                Arrays.fill(tag, -1);
+                this.next = new int[rows];
+                this.head = new int[rows / 2 + 1];
+                this.count = new int[rows / 2 + 1];
+                this.touched = new int[rows / 2 + 1];
+            }
+        }
+    }
+}
@@ -3,12 +3,23 @@ import java.util.*;
 public class FunctionalDependency {
     private Set<String> left;
     private Set<String> right;
+    // Bit set form of left/right for the universe this FD was last bound to
+    private Binding binding;
 
     public FunctionalDependency(Set<String> left, Set<String> right) {
         this.left = left;
         this.right = right;
     }
 
+    /**
+     * Creates an FD from attribute ids, already bound to 'universe'.
+     */
+    public FunctionalDependency(AttributeUniverse universe, AttributeSet left, AttributeSet right) {
+        this.left = universe.toNames(left);
+        this.right = universe.toNames(right);
+        this.binding = new Binding(universe, left, right);
+    }
+
     public Set<String> getLeft() {
         return left;
     }
@@ -17,32 +28,98 @@ public class FunctionalDependency {
         return right;
     }
 
-    @Override
-    public String toString() {
-        return left + " -> " + right;
+    /**
+     * Returns the left side as ids of 'universe', which must have every attribute of the FD; binding never adds
+     * names to a universe, see {@link AttributeUniverse#covering}. The result is cached, so the left/right sets
+     * must not be modified after the FD is bound.
+     * @throws IllegalArgumentException if the universe doesn't have one of the FD's attributes
+     */
+    public AttributeSet getLeftSet(AttributeUniverse universe) {
+        return bind(universe).left;
     }
 
-    // Parse "A->B,A->C,A->D" into a list of FunctionalDependency objects
-    public static List<FunctionalDependency> parseFDs(String fdsString) {
-        List<FunctionalDependency> fdList = new ArrayList<>();
+    /**
+     * Returns the right side as ids of 'universe'. See {@link #getLeftSet(AttributeUniverse)}.
+     */
+    public AttributeSet getRightSet(AttributeUniverse universe) {
+        return bind(universe).right;
+    }
 
-        String[] fdArray = fdsString.split("\\s*,\\s*");
-        for (String fd : fdArray) {
-            String[] sides = fd.split("->");
-            String[] leftSide = sides[0].trim().split("");
-            String[] rightSide = sides[1].trim().split("");
+    /**
+     * True if the FD was last bound to 'universe', so that the universe has all of its attributes.
+     */
+    boolean isBoundTo(AttributeUniverse universe) {
+        Binding current = binding;
+        return current != null && current.universe == universe;
+    }
 
-            Set<String> leftSet = new HashSet<>(Arrays.stream(leftSide).toList());
-            Set<String> rightSet = new HashSet<>(Arrays.stream(rightSide).toList());
+    private Binding bind(AttributeUniverse universe) {
+        Binding current = binding;
+        if (current == null || current.universe != universe) {
+            current = new Binding(universe, idsOf(universe, left), idsOf(universe, right));
+            binding = current;
+        }
+        return current;
+    }
 
-            fdList.add(new FunctionalDependency(leftSet, rightSet));
+    private AttributeSet idsOf(AttributeUniverse universe, Set<String> attributes) {
+        AttributeSet set = AttributeSet.empty(universe.size());
+        for (String attribute : attributes) {
+            int id = universe.idOf(attribute);
+            if (id < 0) {
+                throw new IllegalArgumentException("Attribute " + attribute + " of " + this + " is not in the universe " + universe);
+            }
+            set.add(id);
         }
+        return set;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof FunctionalDependency other)) return false;
+        return left.equals(other.left) && right.equals(other.right);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * left.hashCode() + right.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return left + " -> " + right;
+    }
 
-        return fdList;
+    // Parse "A->B,A->C,AB->D" into a list of FunctionalDependency objects; every name is split into letters, see SchemaParser for the syntax
+    // Use parseFDs(String, AttributeUniverse) for names longer than one letter, like "order_id,line_no -> sku"
+    public static List<FunctionalDependency> parseFDs(String fdsString) {
+        return SchemaParser.parseFDs(fdsString);
+    }
+
+    // Same as parseFDs(String), but names are bound to 'universe'; only unknown names made of its attributes are split: "AB" is A and B
+    public static List<FunctionalDependency> parseFDs(String fdsString, AttributeUniverse universe) {
+        return SchemaParser.parseFDs(fdsString, universe);
     }
 
     public boolean isTrivialFunctionalDependency(FunctionalDependency fd) {
+        Binding bound = fd.binding;
+        if (bound != null) {
+            return bound.left.containsAll(bound.right);
+        }
         return fd.getLeft().containsAll(fd.getRight());
     }
 
+    private static class Binding {
+        private final AttributeUniverse universe;
+        private final AttributeSet left;
+        private final AttributeSet right;
+
+        private Binding(AttributeUniverse universe, AttributeSet left, AttributeSet right) {
+            this.universe = universe;
+            this.left = left;
+            this.right = right;
+        }
+    }
+
 }
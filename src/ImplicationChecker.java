@@ -0,0 +1,154 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+
+/**
+ * Answers "does F imply X -> Y" for many queries against one FD set F, prepared once as a {@link ClosureEngine}.
+ * X -> Y follows from F exactly when Y is part of the closure of X, so queries with the same left side share one
+ * closure. Batches are grouped by left side and the closures are computed on a {@link ForkJoinPool}.
+ * <p>
+ * Queries may name attributes F doesn't mention; they are interned into the checker's own copy of the universe it
+ * was built with, so a checker must not be queried from several threads at once.
+ */
+public class ImplicationChecker {
+    // Left sides per fork/join leaf; one closure is too little work for a task of its own
+    private static final int LEAF_SIZE = 64;
+
+    private final AttributeUniverse universe;
+    private final ClosureEngine engine;
+
+    public ImplicationChecker(List<FunctionalDependency> fds) {
+        this(new AttributeUniverse(), fds);
+    }
+
+    public ImplicationChecker(AttributeUniverse universe, List<FunctionalDependency> fds) {
+        // Batches take each closure once, caching them would only evict more useful entries from the shared cache
+        this.engine = ClosureEngine.prepare(universe.copy(), fds, null);
+        this.universe = engine.getUniverse();
+    }
+
+    public List<FunctionalDependency> getFunctionalDependencies() {
+        return engine.getFunctionalDependencies();
+    }
+
+    public boolean implies(FunctionalDependency query) {
+        return engine.closureOf(universe.toAttributeSet(query.getLeft())).containsAll(universe.toAttributeSet(query.getRight()));
+    }
+
+    /**
+     * Same as {@link #impliesAll(List, ForkJoinPool)} on the common pool.
+     */
+    public boolean[] impliesAll(List<FunctionalDependency> queries) {
+        return impliesAll(queries, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Returns, for each query in order, whether the prepared FDs imply it. One closure is taken per distinct
+     * left side, on 'pool'.
+     */
+    public boolean[] impliesAll(List<FunctionalDependency> queries, ForkJoinPool pool) {
+        AnalysisListener listener = AnalysisListener.shared();
+        long start = listener.phaseStarted(AnalysisPhase.IMPLICATION_CHECK);
+        try {
+            //Step 1: bind the queries and group them by left side. Binding interns, so it is done before forking
+            int n = queries.size();
+            int[] groups = new int[n];
+            AttributeSet[] rights = new AttributeSet[n];
+            Map<AttributeSet, Integer> groupOf = new HashMap<>();
+            List<AttributeSet> lefts = new ArrayList<>();
+            for (int i = 0; i < n; i++) {
+                AttributeSet left = universe.toAttributeSet(queries.get(i).getLeft());
+                rights[i] = universe.toAttributeSet(queries.get(i).getRight());
+                Integer group = groupOf.putIfAbsent(left, lefts.size());
+                if (group == null) {
+                    group = lefts.size();
+                    lefts.add(left);
+                }
+                groups[i] = group;
+            }
+
+            //Step 2: one closure per left side, as single-word masks when every id fits
+            boolean masks = engine.fitsInMask() && universe.size() <= 64;
+            long[] closureMasks = masks ? new long[lefts.size()] : null;
+            AttributeSet[] closures = masks ? null : new AttributeSet[lefts.size()];
+            pool.invoke(new ClosureTask(0, lefts.size(), group -> {
+                if (masks) {
+                    closureMasks[group] = engine.closure(lefts.get(group).toMask());
+                } else {
+                    closures[group] = engine.closureOf(lefts.get(group));
+                }
+            }));
+
+            //Step 3: answer every query from its group's closure
+            boolean[] implied = new boolean[n];
+            for (int i = 0; i < n; i++) {
+                implied[i] = masks
+                        ? (rights[i].toMask() & ~closureMasks[groups[i]]) == 0
+                        : closures[groups[i]].containsAll(rights[i]);
+            }
+            return implied;
+        } finally {
+            listener.phaseFinished(AnalysisPhase.IMPLICATION_CHECK, start);
+        }
+    }
+
+    /**
+     * Returns the queries the prepared FDs don't imply, in order.
+     */
+    public List<FunctionalDependency> notImplied(List<FunctionalDependency> queries) {
+        boolean[] implied = impliesAll(queries);
+        List<FunctionalDependency> result = new ArrayList<>();
+        for (int i = 0; i < implied.length; i++) {
+            if (!implied[i]) {
+                result.add(queries.get(i));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns true if 'f' implies every FD of 'g'.
+     */
+    public static boolean implies(List<FunctionalDependency> f, List<FunctionalDependency> g) {
+        return new ImplicationChecker(f).notImplied(g).isEmpty();
+    }
+
+    /**
+     * Returns true if 'f' and 'g' have the same closure, i.e. each implies every FD of the other.
+     * E.g. a minimal basis is equivalent to the FDs it was computed from.
+     */
+    public static boolean equivalent(List<FunctionalDependency> f, List<FunctionalDependency> g) {
+        AttributeUniverse universe = new AttributeUniverse();
+        return new ImplicationChecker(universe, f).notImplied(g).isEmpty()
+                && new ImplicationChecker(universe, g).notImplied(f).isEmpty();
+    }
+
+    @SuppressWarnings("serial")
+    private static class ClosureTask extends RecursiveAction {
+        private final int from;
+        private final int to;
+        private final IntConsumer action;
+
+        private ClosureTask(int from, int to, IntConsumer action) {
+            this.from = from;
+            this.to = to;
+            this.action = action;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= LEAF_SIZE) {
+                for (int group = from; group < to; group++) {
+                    action.accept(group);
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new ClosureTask(from, middle, action), new ClosureTask(middle, to, action));
+        }
+    }
+}
@@ -0,0 +1,83 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Period;
+import jdk.jfr.Timespan;
+
+/**
+ * {@link MetricsRecorder} that also exports to Java Flight Recorder: every finished phase is an
+ * {@code databasecalculator.AnalysisPhase} event, and the running counters are sampled once per second as
+ * {@code databasecalculator.AnalysisCounters}. Events only cost anything while a recording has them enabled.
+ * Call {@link #close()} to stop the periodic sampling.
+ */
+public class JfrAnalysisListener extends MetricsRecorder implements AutoCloseable {
+    private final Runnable sampler = this::sample;
+
+    public JfrAnalysisListener() {
+        FlightRecorder.addPeriodicEvent(CountersEvent.class, sampler);
+    }
+
+    @Override
+    public void phaseFinished(AnalysisPhase phase, long start) {
+        super.phaseFinished(phase, start);
+        PhaseEvent event = new PhaseEvent();
+        if (event.shouldCommit()) {
+            event.phase = phase.name();
+            event.elapsed = System.nanoTime() - start;
+            event.commit();
+        }
+    }
+
+    private void sample() {
+        CountersEvent event = new CountersEvent();
+        event.closures = getClosures();
+        event.fdScans = getFdScans();
+        event.cacheHits = getCacheHits();
+        event.subsetsVisited = getSubsetsVisited();
+        event.maxRecursionDepth = getMaxRecursionDepth();
+        event.commit();
+    }
+
+    @Override
+    public void close() {
+        FlightRecorder.removePeriodicEvent(sampler);
+    }
+
+    @Name("databasecalculator.AnalysisPhase")
+    @Label("Analysis Phase")
+    @Category("Database Calculator")
+    @Description("A key, normal form or decomposition phase finished")
+    static class PhaseEvent extends Event {
+        @Label("Phase")
+        String phase;
+
+        @Label("Elapsed")
+        @Timespan(Timespan.NANOSECONDS)
+        long elapsed;
+    }
+
+    @Name("databasecalculator.AnalysisCounters")
+    @Label("Analysis Counters")
+    @Category("Database Calculator")
+    @Description("Running totals of the analysis counters")
+    @Period("1 s")
+    static class CountersEvent extends Event {
+        @Label("Closures")
+        long closures;
+
+        @Label("FD Scans")
+        long fdScans;
+
+        @Label("Cache Hits")
+        long cacheHits;
+
+        @Label("Subsets Visited")
+        long subsetsVisited;
+
+        @Label("Max Recursion Depth")
+        long maxRecursionDepth;
+    }
+}
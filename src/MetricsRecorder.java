@@ -0,0 +1,152 @@
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * {@link AnalysisListener} that adds up all events and can report them as a JSON snapshot.
+ * Counters are {@link LongAdder}s, so threads reporting at the same time don't contend.
+ */
+public class MetricsRecorder extends AnalysisListener {
+    private final LongAdder closures = new LongAdder();
+    private final LongAdder fdScans = new LongAdder();
+    private final LongAdder closureDepth = new LongAdder();
+    // Closures that reported a depth; the single-word path doesn't
+    private final LongAdder depthSamples = new LongAdder();
+    private final LongAccumulator maxClosureDepth = new LongAccumulator(Long::max, 0);
+    private final LongAdder cacheHits = new LongAdder();
+    private final LongAdder subsets = new LongAdder();
+    private final LongAccumulator maxRecursionDepth = new LongAccumulator(Long::max, 0);
+    private final LongAdder[] phaseCalls = new LongAdder[AnalysisPhase.values().length];
+    private final LongAdder[] phaseNanos = new LongAdder[AnalysisPhase.values().length];
+
+    public MetricsRecorder() {
+        for (int i = 0; i < phaseCalls.length; i++) {
+            phaseCalls[i] = new LongAdder();
+            phaseNanos[i] = new LongAdder();
+        }
+    }
+
+    @Override
+    public void closureComputed(int depth, int fdScans) {
+        closures.increment();
+        this.fdScans.add(fdScans);
+        if (depth > 0) {
+            closureDepth.add(depth);
+            depthSamples.increment();
+            maxClosureDepth.accumulate(depth);
+        }
+    }
+
+    @Override
+    public void closureCacheHit() {
+        cacheHits.increment();
+    }
+
+    @Override
+    public void subsetsVisited(long count) {
+        subsets.add(count);
+    }
+
+    @Override
+    public void recursionEntered(int depth) {
+        maxRecursionDepth.accumulate(depth);
+    }
+
+    @Override
+    public long phaseStarted(AnalysisPhase phase) {
+        return System.nanoTime();
+    }
+
+    @Override
+    public void phaseFinished(AnalysisPhase phase, long start) {
+        phaseCalls[phase.ordinal()].increment();
+        phaseNanos[phase.ordinal()].add(System.nanoTime() - start);
+    }
+
+    /**
+     * Number of closures computed, not counting cache hits.
+     */
+    public long getClosures() {
+        return closures.sum();
+    }
+
+    public long getFdScans() {
+        return fdScans.sum();
+    }
+
+    public long getMaxClosureDepth() {
+        return maxClosureDepth.get();
+    }
+
+    public long getCacheHits() {
+        return cacheHits.sum();
+    }
+
+    public long getSubsetsVisited() {
+        return subsets.sum();
+    }
+
+    public long getMaxRecursionDepth() {
+        return maxRecursionDepth.get();
+    }
+
+    public long getPhaseCalls(AnalysisPhase phase) {
+        return phaseCalls[phase.ordinal()].sum();
+    }
+
+    /**
+     * Total time spent in 'phase', including the phases nested in it.
+     */
+    public long getPhaseNanos(AnalysisPhase phase) {
+        return phaseNanos[phase.ordinal()].sum();
+    }
+
+    public void reset() {
+        closures.reset();
+        fdScans.reset();
+        closureDepth.reset();
+        depthSamples.reset();
+        maxClosureDepth.reset();
+        cacheHits.reset();
+        subsets.reset();
+        maxRecursionDepth.reset();
+        for (int i = 0; i < phaseCalls.length; i++) {
+            phaseCalls[i].reset();
+            phaseNanos[i].reset();
+        }
+    }
+
+    /**
+     * Returns the counters as a JSON object. Counters are read one at a time while other threads may still
+     * be reporting, so the snapshot is not atomic across counters.
+     */
+    public String toJson() {
+        long samples = depthSamples.sum();
+        StringBuilder json = new StringBuilder("{");
+        json.append("\"closures\":").append(getClosures());
+        json.append(",\"fdScans\":").append(getFdScans());
+        json.append(",\"averageClosureDepth\":").append(samples == 0 ? 0.0 : (double) closureDepth.sum() / samples);
+        json.append(",\"maxClosureDepth\":").append(getMaxClosureDepth());
+        json.append(",\"cacheHits\":").append(getCacheHits());
+        json.append(",\"subsetsVisited\":").append(getSubsetsVisited());
+        json.append(",\"maxRecursionDepth\":").append(getMaxRecursionDepth());
+        json.append(",\"phases\":{");
+        boolean first = true;
+        for (AnalysisPhase phase : AnalysisPhase.values()) {
+            long calls = getPhaseCalls(phase);
+            if (calls == 0) {
+                continue;
+            }
+            json.append(first ? "" : ",");
+            json.append('"').append(phase.name()).append("\":{\"calls\":").append(calls)
+                    .append(",\"nanos\":").append(getPhaseNanos(phase)).append('}');
+            first = false;
+        }
+        json.append("}}");
+        return json.toString();
+    }
+
+    @Override
+    public String toString() {
+        return toJson();
+    }
+}
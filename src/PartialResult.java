@@ -0,0 +1,42 @@
+/**
+ * Result of an analysis run under an {@link AnalysisBudget}.
+ * If the budget ran out, the value holds whatever was found until then and {@link #isComplete()} is false;
+ * each entry point documents what its partial value means.
+ */
+public class PartialResult<T> {
+    private final T value;
+    private final AnalysisBudget.StopReason stopReason;
+
+    private PartialResult(T value, AnalysisBudget.StopReason stopReason) {
+        this.value = value;
+        this.stopReason = stopReason;
+    }
+
+    public static <T> PartialResult<T> complete(T value) {
+        return new PartialResult<>(value, null);
+    }
+
+    public static <T> PartialResult<T> incomplete(T value, AnalysisBudget.StopReason stopReason) {
+        return new PartialResult<>(value, stopReason);
+    }
+
+    public T getValue() {
+        return value;
+    }
+
+    public boolean isComplete() {
+        return stopReason == null;
+    }
+
+    /**
+     * Why the analysis stopped early, or null if it completed.
+     */
+    public AnalysisBudget.StopReason getStopReason() {
+        return stopReason;
+    }
+
+    @Override
+    public String toString() {
+        return isComplete() ? String.valueOf(value) : value + " (incomplete, " + stopReason + ")";
+    }
+}
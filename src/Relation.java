@@ -5,10 +5,25 @@ import java.util.Set;
 public class Relation {
     private String name;
     private Set<String> attributes;
+    private AttributeUniverse universe;
+    private AttributeSet attributeSet;
 
     public Relation(String name, Set<String> attributes) {
         this.name = name;
         this.attributes = attributes;
+        this.universe = AttributeUniverse.of(attributes);
+        this.attributeSet = universe.toAttributeSet(attributes);
+    }
+
+    /**
+     * Creates a relation whose attributes are ids in an existing universe,
+     * e.g. a sub-relation produced while decomposing another relation.
+     */
+    public Relation(String name, AttributeUniverse universe, AttributeSet attributeSet) {
+        this.name = name;
+        this.attributes = universe.toNames(attributeSet);
+        this.universe = universe;
+        this.attributeSet = attributeSet;
     }
 
     public String getName() {
@@ -19,6 +34,17 @@ public class Relation {
         return attributes;
     }
 
+    /**
+     * Symbol table the attribute ids of this relation (and of FDs bound to it) refer to.
+     */
+    public AttributeUniverse getUniverse() {
+        return universe;
+    }
+
+    public AttributeSet getAttributeSet() {
+        return attributeSet;
+    }
+
     @Override
     public String toString() {
         return "Relation{" +
@@ -27,26 +53,9 @@ public class Relation {
                 '}';
     }
 
-    // Parse "R(A,B,C,D)" into a Relation object
+    // Parse "R(A,B,C,D)" into a Relation object, see SchemaParser for the syntax
     public static Relation parseRelation(String relationString) {
-        // Example input: R(A,B,C,D)
-        // 1) Extract the relation name "R"
-        // 2) Extract the attributes "A,B,C,D"
-        // 3) Split on commas
-
-        // Find the index of '(' and ')'
-        int openParen = relationString.indexOf('(');
-        int closeParen = relationString.indexOf(')');
-
-        // Relation name is everything before '('
-        String name = relationString.substring(0, openParen).trim();
-
-        // Inside parentheses: the comma-separated attributes
-        String attributesPart = relationString.substring(openParen + 1, closeParen).trim();
-        String[] attributesArray = attributesPart.split("\\s*,\\s*");
-        Set<String> attributes = Set.of(attributesArray);
-
-        return new Relation(name, attributes);
+        return SchemaParser.parseRelation(relationString);
     }
 
 }
@@ -1,5 +1,8 @@
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.LongPredicate;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public class RelationKeyUtils {
     public static void main(String[] args) {
@@ -11,7 +14,7 @@ public class RelationKeyUtils {
         System.out.println("Parsed Relation: " + relation);
 
         // Parse the functional dependencies
-        List<FunctionalDependency> fdList = FunctionalDependency.parseFDs(fdsStr);
+        List<FunctionalDependency> fdList = FunctionalDependency.parseFDs(fdsStr, relation.getUniverse().copy());
         System.out.println("Parsed FDs:");
         for (FunctionalDependency fd : fdList) {
             System.out.println("  " + fd);
@@ -27,9 +30,166 @@ public class RelationKeyUtils {
 
 
     public static List<Set<String>> getCandidateKeys(Relation relation, List<FunctionalDependency> fds){
-        List<Set<String>> superKeys = getSuperKeys(relation, fds);
-        return superKeys.stream().filter(superKey -> isCandidateKey(relation, fds, superKey))
-                .toList();
+        return getCandidateKeys(relation, fds, AnalysisBudget.unlimited()).getValue();
+    }
+
+    /**
+     * Same as {@link #getCandidateKeys(Relation, List)}, but stops once 'budget' runs out.
+     * An incomplete result holds the candidate keys found so far, smallest first. There is always at least one
+     * unless the FDs' left sides reach outside the relation, where keys are found by enumerating super keys.
+     */
+    public static PartialResult<List<Set<String>>> getCandidateKeys(Relation relation, List<FunctionalDependency> fds, AnalysisBudget budget){
+        AnalysisListener listener = AnalysisListener.shared();
+        long start = listener.phaseStarted(AnalysisPhase.CANDIDATE_KEYS);
+        try {
+            AttributeUniverse universe = relation.getUniverse();
+            ClosureEngine engine = ClosureEngine.prepare(universe, fds);
+            if (!isOverRelation(relation, engine)) {
+                // Lucchesi-Osborn needs every left side inside the relation, so fall back to filtering all super keys
+                List<Set<String>> superKeys = getSuperKeys(relation, fds, budget).getValue();
+                return budget.result(superKeys.stream().filter(superKey -> isCandidateKey(relation, fds, superKey))
+                        .toList());
+            }
+            return budget.result(findCandidateKeys(relation, engine, budget).stream()
+                    .map(universe::toNames)
+                    .toList());
+        } finally {
+            listener.phaseFinished(AnalysisPhase.CANDIDATE_KEYS, start);
+        }
+    }
+
+    /**
+     * Finds all candidate keys with the Lucchesi-Osborn algorithm, which runs in time polynomial in the
+     * number of keys instead of enumerating every subset of the relation.
+     * Starting from one key K, every FD X->Y yields the super key X ∪ (K \ Y); if it contains no key found so far,
+     * it is shrunk to a new key. Attributes are classified first:
+     * those on no right side can't be derived and are in every key, and those only on right sides are in no key.
+     * Every FD's left side must be a subset of the relation's attributes.
+     * @return the candidate keys, smallest first
+     */
+    public static List<AttributeSet> findCandidateKeys(Relation relation, ClosureEngine engine) {
+        return findCandidateKeys(relation, engine, AnalysisBudget.unlimited());
+    }
+
+    /**
+     * Same as {@link #findCandidateKeys(Relation, ClosureEngine)}, but stops once 'budget' runs out.
+     * Every super key derived from a key and an FD counts as one visited subset. The first key is always found.
+     * @return the candidate keys found until the budget ran out, smallest first
+     */
+    public static List<AttributeSet> findCandidateKeys(Relation relation, ClosureEngine engine, AnalysisBudget budget) {
+        AttributeUniverse universe = engine.getUniverse();
+        AttributeSet all = relation.getAttributeSet();
+        AttributeSet onLeft = AttributeSet.empty(universe.size());
+        AttributeSet onRight = AttributeSet.empty(universe.size());
+        for (FunctionalDependency fd : engine.getFunctionalDependencies()) {
+            AttributeSet left = fd.getLeftSet(universe);
+            onLeft.addAll(left);
+            onRight.addAll(fd.getRightSet(universe).difference(left));
+        }
+        // Attributes that can't be derived are in every key
+        AttributeSet core = all.difference(onRight);
+        // Attributes that are derived but never used to derive anything are in no key
+        AttributeSet excluded = all.intersection(onRight);
+        excluded.removeAll(onLeft);
+
+        SuperKeySet found = new SuperKeySet(relation);
+        found.add(minimizeKey(all, engine, all.difference(excluded), core));
+        // Live view, so keys added below are visited by this loop as well
+        List<AttributeSet> keys = found.getCandidateKeys();
+
+        search:
+        for (int i = 0; i < keys.size(); i++) {
+            AttributeSet key = keys.get(i);
+            for (FunctionalDependency fd : engine.getFunctionalDependencies()) {
+                if (!budget.visit()) {
+                    break search;
+                }
+                AttributeSet superKey = key.difference(fd.getRightSet(universe));
+                superKey.addAll(fd.getLeftSet(universe));
+                superKey.retainAll(all);
+                if (!found.isSuperKey(superKey)) {
+                    found.add(minimizeKey(all, engine, superKey, core));
+                }
+            }
+        }
+
+        List<AttributeSet> sorted = new ArrayList<>(keys);
+        sorted.sort(AttributeSet.BY_SIZE);
+        return sorted;
+    }
+
+    /**
+     * Returns one candidate key of 'relation' without searching for the others. Attributes that can't be derived
+     * are kept, and attributes they derive or that derive nothing are dropped up front, so only the remaining
+     * attributes cost a closure each.
+     */
+    public static AttributeSet findCandidateKey(Relation relation, ClosureEngine engine) {
+        AttributeUniverse universe = engine.getUniverse();
+        AttributeSet all = relation.getAttributeSet();
+        AttributeSet onLeft = AttributeSet.empty(universe.size());
+        AttributeSet onRight = AttributeSet.empty(universe.size());
+        for (FunctionalDependency fd : engine.getFunctionalDependencies()) {
+            AttributeSet left = fd.getLeftSet(universe);
+            onLeft.addAll(left);
+            onRight.addAll(fd.getRightSet(universe).difference(left));
+        }
+        AttributeSet core = all.difference(onRight);
+        AttributeSet superKey = all.intersection(onLeft);
+        superKey.addAll(core);
+        superKey.removeAll(engine.closureOf(core).difference(core));
+        if (!engine.closureOf(superKey).containsAll(all)) {
+            // Only when some FD needs attributes outside the relation
+            superKey = all;
+        }
+        return minimizeKey(all, engine, superKey, core);
+    }
+
+    /**
+     * Returns the super keys of 'relation' as the antichain of its candidate keys, see {@link SuperKeySet}.
+     */
+    public static SuperKeySet getSuperKeySet(Relation relation, List<FunctionalDependency> fds) {
+        return getSuperKeySet(relation, ClosureEngine.prepare(relation.getUniverse(), fds));
+    }
+
+    public static SuperKeySet getSuperKeySet(Relation relation, ClosureEngine engine) {
+        if (isOverRelation(relation, engine)) {
+            return new SuperKeySet(relation, findCandidateKeys(relation, engine));
+        }
+        AttributeUniverse universe = relation.getUniverse();
+        List<AttributeSet> keys = new ArrayList<>();
+        for (Set<String> key : getCandidateKeys(relation, engine.getFunctionalDependencies())) {
+            keys.add(universe.toAttributeSet(key));
+        }
+        return new SuperKeySet(relation, keys);
+    }
+
+    /**
+     * Returns the prime attributes of 'relation', i.e. those that are part of at least one candidate key.
+     */
+    public static AttributeSet getPrimeAttributes(Relation relation, ClosureEngine engine) {
+        return getSuperKeySet(relation, engine).getPrimeAttributes().copy();
+    }
+
+    /**
+     * Drops attributes from the super key 'superKey' one at a time, as long as the rest is still a super key.
+     * Attributes in 'core' are known to be in every key and are never tried.
+     */
+    private static AttributeSet minimizeKey(AttributeSet all, ClosureEngine engine, AttributeSet superKey, AttributeSet core) {
+        AttributeSet key = superKey.copy();
+        for (int a = superKey.nextSetBit(0); a >= 0; a = superKey.nextSetBit(a + 1)) {
+            if (core.contains(a)) continue;
+            key.remove(a);
+            if (!engine.closureOf(key).containsAll(all)) {
+                key.add(a);
+            }
+        }
+        return key;
+    }
+
+    private static boolean isOverRelation(Relation relation, ClosureEngine engine) {
+        AttributeUniverse universe = engine.getUniverse();
+        return engine.getFunctionalDependencies().stream()
+                .allMatch(fd -> relation.getAttributeSet().containsAll(fd.getLeftSet(universe)));
     }
 
     /**
@@ -40,27 +200,89 @@ public class RelationKeyUtils {
      * @return
      */
     public static boolean isCandidateKey(Relation relation, List<FunctionalDependency> fds, Set<String> attributes){
-        List<Set<String>> subsets = getCombinations(attributes)
-                .stream()
-                .filter(combination -> combination.size() == attributes.size() -1)  //We only need to check subset that is one size smaller
-                .toList();
-        return subsets.stream().noneMatch(subset -> isSuperKey(relation, fds, subset));
+        ClosureEngine engine = ClosureEngine.prepare(relation.getUniverse(), fds);
+        AttributeSet key = engine.getUniverse().lookup(attributes);
+        if (key.cardinality() < attributes.size()) {
+            //An attribute neither the relation nor the FDs know derives nothing, so leaving it out gives the strongest subset
+            return !engine.closureOf(key).containsAll(relation.getAttributeSet());
+        }
+        //We only need to check subset that is one size smaller
+        int size = key.cardinality();
+        AnalysisListener listener = AnalysisListener.shared();
+        return streamSubsets(key, size - 1, size - 1, false)
+                .peek(subset -> listener.subsetsVisited(1))
+                .noneMatch(subset -> engine.closureOf(subset).containsAll(relation.getAttributeSet()));
     }
 
+    /**
+     * Lists every super key of 'relation', smallest first. There can be close to 2^n of them;
+     * {@link #getSuperKeySet} answers super key and prime attribute queries without listing them.
+     */
     public static List<Set<String>> getSuperKeys(Relation relation, List<FunctionalDependency> fds) {
-        Set<String> attributes = relation.getAttributes();
-        List<Set<String>> superkeys = new ArrayList<>();
+        return getSuperKeys(relation, fds, AnalysisBudget.unlimited()).getValue();
+    }
 
-        //Get all possible combinations
-        List<Set<String>> combinations = getCombinations(attributes);
+    /**
+     * Same as {@link #getSuperKeys(Relation, List)}, but stops once 'budget' runs out.
+     * Subsets are checked smallest first, so an incomplete result holds every super key up to some size,
+     * and some of the next size.
+     */
+    public static PartialResult<List<Set<String>>> getSuperKeys(Relation relation, List<FunctionalDependency> fds, AnalysisBudget budget) {
+        AnalysisListener listener = AnalysisListener.shared();
+        long start = listener.phaseStarted(AnalysisPhase.SUPER_KEYS);
+        try {
+            AttributeUniverse universe = relation.getUniverse();
+            AttributeSet attributes = relation.getAttributeSet();
+            ClosureEngine engine = ClosureEngine.prepare(universe, fds);
 
-        for(Set<String> combination : combinations) {
-            if(isSuperKey(relation, fds, combination)) superkeys.add(combination);
+            //Subsets come smallest first, so the super keys are already sorted by size
+            List<Set<String>> superKeys = streamSubsets(attributes, 1, attributes.cardinality(), false)
+                    .takeWhile(combination -> budget.visit())
+                    .peek(combination -> listener.subsetsVisited(1))
+                    .filter(combination -> engine.closureOf(combination).containsAll(attributes))
+                    .map(universe::toNames)
+                    .toList();
+            return budget.result(superKeys);
+        } finally {
+            listener.phaseFinished(AnalysisPhase.SUPER_KEYS, start);
         }
+    }
 
-        superkeys.sort(Comparator.comparingInt(Set::size));
+    /**
+     * Same as {@link #getSuperKeys(Relation, List)}, but the subsets are split into ranges that are checked on 'pool'.
+     * The result is in the same order as the sequential version.
+     */
+    public static List<Set<String>> getSuperKeys(Relation relation, List<FunctionalDependency> fds, ForkJoinPool pool) {
+        AnalysisListener listener = AnalysisListener.shared();
+        long start = listener.phaseStarted(AnalysisPhase.SUPER_KEYS);
+        try {
+            AttributeUniverse universe = relation.getUniverse();
+            AttributeSet attributes = relation.getAttributeSet();
+            ClosureEngine engine = ClosureEngine.prepare(universe, fds);
+            int[] ids = attributes.toArray();
 
-        return superkeys;
+            long[] superKeys = SubsetTask.filter(pool, SubsetSpliterator.of(ids.length), closureTest(engine, attributes, ids));
+            listener.subsetsVisited((1L << ids.length) - 1);
+            List<Set<String>> result = new ArrayList<>(superKeys.length);
+            for (long mask : superKeys) {
+                result.add(universe.toNames(subsetOf(ids, mask)));
+            }
+            return result;
+        } finally {
+            listener.phaseFinished(AnalysisPhase.SUPER_KEYS, start);
+        }
+    }
+
+    /**
+     * Returns a test of whether the subset of 'ids' picked by a mask is a super key of 'attributes'.
+     * Uses single-word closures when the engine allows it.
+     */
+    private static LongPredicate closureTest(ClosureEngine engine, AttributeSet attributes, int[] ids) {
+        if (engine.fitsInMask()) {
+            long all = attributes.toMask();
+            return mask -> (engine.closure(depositMask(ids, mask)) & all) == all;
+        }
+        return mask -> engine.closureOf(subsetOf(ids, mask)).containsAll(attributes);
     }
 
     /**
@@ -71,65 +293,92 @@ public class RelationKeyUtils {
      * @return
      */
     public static boolean isSuperKey(Relation relation, List<FunctionalDependency> fds, Set<String> attributes) {
-        Set<String> closure = getClosureFromAttributes(attributes, fds).getClosure();
-        return closure.containsAll(relation.getAttributes());
+        return isSuperKey(relation, ClosureEngine.prepare(relation.getUniverse(), fds), attributes);
+    }
+
+    public static boolean isSuperKey(Relation relation, ClosureEngine engine, Set<String> attributes) {
+        // Attributes neither the relation nor the FDs know derive nothing and are left out
+        AttributeSet closure = engine.closureOf(engine.getUniverse().lookup(attributes));
+        return closure.containsAll(relation.getAttributeSet());
     }
 
     public static ClosureResult getClosureFromAttributes(Set<String> attributes, List<FunctionalDependency> fds) {
-        Set<String> closure = new HashSet<String>(attributes);
-        int depth = 0;
-
-        boolean changed = true;
-        while (changed) {
-            changed = false;
-            depth++;
-
-            // Try each FD: if FD.left ⊆ closure, then add FD.right to closure
-            for (FunctionalDependency fd : fds) {
-                // Example of fd.left being a Set<String>
-                // We check if closure contains all of them
-                if (closure.containsAll(fd.getLeft())) {
-                    // If the left side is contained in closure, we can add the right side
-                    // If we successfully add *new* attributes, mark changed = true
-                    if (closure.addAll(fd.getRight())) {
-                        changed = true;
-                    }
-                }
-            }
-        }
-        return new ClosureResult(closure, depth);
+        AttributeUniverse universe = AttributeUniverse.of(attributes);
+        return getClosureFromAttributes(universe, universe.toAttributeSet(attributes), fds);
+    }
+
+    /**
+     * Same as {@link #getClosureFromAttributes(Set, List)}, but over attribute ids of 'universe'.
+     * The FDs are bound to 'universe', or to a copy of it if they mention attributes it doesn't have; the result is
+     * over whichever of the two they were bound to, and 'universe' itself never grows.
+     * Callers that need many closures over the same FDs should prepare a {@link ClosureEngine} once instead, or an
+     * {@link ImplicationChecker} to test many FDs for implication.
+     */
+    public static ClosureResult getClosureFromAttributes(AttributeUniverse universe, AttributeSet attributes, List<FunctionalDependency> fds) {
+        return ClosureEngine.prepare(universe, fds).closure(attributes);
     }
 
     /**
      * Returns all subsets (the power set) of the given set (without empty set).
+     * Materializes all 2^n subsets; prefer {@link #streamCombinations(Set)} when they are consumed one by one.
      *
      * @param input a Set of elements
      * @param <T>   type of elements
      * @return a List of Sets, where each Set is a subset of 'input'
      */
     public static <T> List<Set<T>> getCombinations(Set<T> input) {
+        return streamCombinations(input).collect(Collectors.toCollection(ArrayList::new));
+    }
+
+    /**
+     * Lazily streams all non-empty subsets of the given set, smallest first.
+     */
+    public static <T> Stream<Set<T>> streamCombinations(Set<T> input) {
         // Convert to a list so we can refer to elements by index
         List<T> elements = new ArrayList<>(input);
-        List<Set<T>> allSubsets = new ArrayList<>();
-
-        // There are 2^n subsets for n elements
         int n = elements.size();
-        int totalSubsets = 1 << n;  // 2^n
-
-        // For each number from 0 to 2^n - 1,
-        // use the binary form to decide which elements go into the subset
-        for (int mask = 1; mask < totalSubsets; mask++) {
+        return SubsetSpliterator.stream(n, false).mapToObj(mask -> {
             Set<T> subset = new HashSet<>();
             for (int i = 0; i < n; i++) {
                 // Check if the i-th bit of 'mask' is set
-                if ((mask & (1 << i)) != 0) {
+                if ((mask & (1L << i)) != 0) {
                     subset.add(elements.get(i));
                 }
             }
-            allSubsets.add(subset);
+            return subset;
+        });
+    }
+
+    /**
+     * Lazily streams the subsets of 'attributes' with between 'minSize' and 'maxSize' elements, smallest first.
+     * Subsets of the same size are ordered by their highest attribute id, then the next highest, and so on.
+     */
+    public static Stream<AttributeSet> streamSubsets(AttributeSet attributes, int minSize, int maxSize, boolean parallel) {
+        int[] ids = attributes.toArray();
+        return SubsetSpliterator.stream(ids.length, minSize, maxSize, parallel)
+                .mapToObj(mask -> subsetOf(ids, mask));
+    }
+
+    /**
+     * Returns the id mask holding ids[i] for every bit i set in 'mask'. All ids must be below 64.
+     */
+    public static long depositMask(int[] ids, long mask) {
+        long result = 0;
+        for (long m = mask; m != 0; m &= m - 1) {
+            result |= 1L << ids[Long.numberOfTrailingZeros(m)];
+        }
+        return result;
+    }
+
+    /**
+     * Returns the attribute set holding ids[i] for every bit i set in 'mask'.
+     */
+    public static AttributeSet subsetOf(int[] ids, long mask) {
+        AttributeSet subset = AttributeSet.empty();
+        for (long m = mask; m != 0; m &= m - 1) {
+            subset.add(ids[Long.numberOfTrailingZeros(m)]);
         }
-        allSubsets.sort(Comparator.comparingInt(Set::size));
-        return allSubsets;
+        return subset;
     }
 
-}
\ No newline at end of file
+}
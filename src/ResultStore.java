@@ -0,0 +1,408 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only file of {@link SchemaAnalysis} results, keyed by {@link SchemaFingerprint} hash, so that a schema
+ * analyzed before is answered with one lookup.
+ * <p>
+ * The file starts with a 4 byte magic number, followed by records of
+ * [payload length][format version][32 byte hash][payload][CRC32 of version, hash and payload].
+ * Payloads store attributes as canonical positions, so a result can be reused for any schema with the same
+ * fingerprint and is translated back to that schema's attribute names on lookup. For a schema that was stored
+ * under other names this is the earlier schema's result renamed: keys and normal form are the same as a fresh
+ * analysis would give, but where several decompositions are valid it may hold a different one.
+ * The file is memory-mapped for reading and records are only ever appended; on open a torn record at the end
+ * (e.g. after a crash) is cut off.
+ * Records of other format versions and repeated hashes are kept until the store is compacted with
+ * {@link #compact(Path, Path)}, which should run while no process has the store open.
+ * <p>
+ * A store may be shared by threads, but not by processes.
+ */
+public class ResultStore implements Closeable {
+    public static final int FORMAT_VERSION = 1;
+
+    private static final byte[] MAGIC = {'S', 'R', 'S', '1'};
+    private static final int HASH_BYTES = 32;
+    // Length, version and hash before the payload, CRC after it
+    private static final int HEADER_BYTES = Integer.BYTES + 1 + HASH_BYTES;
+    private static final int RECORD_OVERHEAD = HEADER_BYTES + Integer.BYTES;
+
+    private final Path file;
+    private final FileChannel channel;
+    // Hash -> {payload offset, payload length} of the latest record in the current format
+    private final Map<String, long[]> index;
+    private MappedByteBuffer mapped;
+    private long size;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    private ResultStore(Path file, FileChannel channel) throws IOException {
+        this.file = file;
+        this.channel = channel;
+        this.index = new LinkedHashMap<>();
+        this.size = channel.size();
+        if (size == 0) {
+            write(ByteBuffer.wrap(MAGIC));
+            return;
+        }
+        this.mapped = map(channel, size);
+        long end = scan(file, mapped, index);
+        if (end < size) {
+            channel.truncate(end);
+            size = end;
+            mapped = map(channel, size);
+        }
+    }
+
+    /**
+     * Opens the store at 'file', creating it if it doesn't exist.
+     */
+    public static ResultStore open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+        try {
+            return new ResultStore(file, channel);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the stored analysis of 'relation' and 'fds', or computes and stores it.
+     */
+    public SchemaAnalysis analyze(Relation relation, List<FunctionalDependency> fds) throws IOException {
+        return analyze(relation, fds, AnalysisBudget.unlimited()).getValue();
+    }
+
+    /**
+     * Same as {@link #analyze(Relation, List)}, but computes under 'budget'. Incomplete analyses aren't stored.
+     */
+    public PartialResult<SchemaAnalysis> analyze(Relation relation, List<FunctionalDependency> fds, AnalysisBudget budget) throws IOException {
+        SchemaFingerprint fingerprint = SchemaFingerprint.of(relation, fds);
+        SchemaAnalysis stored = get(fingerprint, relation);
+        if (stored != null) {
+            return PartialResult.complete(stored);
+        }
+        PartialResult<SchemaAnalysis> analysis = SchemaAnalysis.compute(relation, fds, budget);
+        if (analysis.isComplete()) {
+            put(fingerprint, relation, analysis.getValue());
+        }
+        return analysis;
+    }
+
+    /**
+     * Returns the analysis stored under 'fingerprint' with attributes named as in the schema the fingerprint was
+     * taken of, and sub-relations named after 'relation', or null if there is none.
+     */
+    public synchronized SchemaAnalysis get(SchemaFingerprint fingerprint, Relation relation) throws IOException {
+        long[] location = index.get(fingerprint.getHash());
+        if (location == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        if (mapped == null || location[0] + location[1] > mapped.capacity()) {
+            // Written since the file was last mapped
+            mapped = map(channel, size);
+        }
+        byte[] payload = new byte[(int) location[1]];
+        mapped.get((int) location[0], payload);
+        return decode(payload, fingerprint, relation);
+    }
+
+    /**
+     * Appends 'analysis' of the schema 'fingerprint' was taken of, unless the store already has a result for it.
+     */
+    public synchronized void put(SchemaFingerprint fingerprint, Relation relation, SchemaAnalysis analysis) throws IOException {
+        if (index.containsKey(fingerprint.getHash())) {
+            return;
+        }
+        byte[] payload = encode(analysis, fingerprint, relation);
+        long offset = append(fingerprint.getHash(), FORMAT_VERSION, payload);
+        index.put(fingerprint.getHash(), new long[]{offset, payload.length});
+    }
+
+    // Writes one record at the end of the file and returns the offset of its payload
+    private long append(String hash, int version, byte[] payload) throws IOException {
+        ByteBuffer record = ByteBuffer.allocate(RECORD_OVERHEAD + payload.length);
+        record.putInt(payload.length).put((byte) version).put(fromHex(hash)).put(payload);
+        CRC32 crc = new CRC32();
+        crc.update(record.array(), Integer.BYTES, 1 + HASH_BYTES + payload.length);
+        record.putInt((int) crc.getValue());
+        record.flip();
+        long offset = size + HEADER_BYTES;
+        write(record);
+        return offset;
+    }
+
+    private void write(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            size += channel.write(buffer, size);
+        }
+    }
+
+    /**
+     * Number of distinct schemas in the store.
+     */
+    public synchronized int size() {
+        return index.size();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * Forces appended records to disk.
+     */
+    public synchronized void flush() throws IOException {
+        channel.force(false);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        mapped = null;
+        try {
+            channel.force(false);
+        } finally {
+            channel.close();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "ResultStore{" +
+                "file=" + file +
+                ", size=" + size() +
+                ", hits=" + getHits() +
+                ", misses=" + getMisses() +
+                '}';
+    }
+
+    /**
+     * Usage: ResultStore compact store [target]
+     * Without a target the store is replaced by its compacted copy.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2 || !args[0].equals("compact")) {
+            System.err.println("Usage: ResultStore compact store [target]");
+            System.exit(2);
+        }
+        Path source = Path.of(args[1]);
+        Path target = args.length > 2 ? Path.of(args[2]) : source.resolveSibling(source.getFileName() + ".compact");
+        long kept = compact(source, target);
+        if (args.length <= 2) {
+            Files.move(target, source, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            target = source;
+        }
+        System.out.println("Kept " + kept + " records in " + target);
+    }
+
+    /**
+     * Copies the latest record of every hash in the current format from 'source' to a new store at 'target',
+     * dropping older duplicates, records of other format versions and a torn record at the end.
+     * @return number of records kept
+     */
+    public static long compact(Path source, Path target) throws IOException {
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = map(in, in.size());
+            Map<String, long[]> latest = new LinkedHashMap<>();
+            scan(source, buffer, latest);
+            Files.deleteIfExists(target);
+            try (ResultStore out = open(target)) {
+                for (Map.Entry<String, long[]> entry : latest.entrySet()) {
+                    byte[] payload = new byte[(int) entry.getValue()[1]];
+                    buffer.get((int) entry.getValue()[0], payload);
+                    out.append(entry.getKey(), FORMAT_VERSION, payload);
+                }
+            }
+            return latest.size();
+        }
+    }
+
+    private static MappedByteBuffer map(FileChannel channel, long size) throws IOException {
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Result store of " + size + " bytes is too large to map, compact it");
+        }
+        return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+    }
+
+    // Indexes the records of the current format and returns the offset just past the last intact record
+    private static long scan(Path file, MappedByteBuffer buffer, Map<String, long[]> index) throws IOException {
+        int limit = buffer.capacity();
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (limit < MAGIC.length || buffer.get(i) != MAGIC[i]) {
+                throw new IOException(file + " is not a result store");
+            }
+        }
+        int position = MAGIC.length;
+        byte[] hash = new byte[HASH_BYTES];
+        while (limit - position >= RECORD_OVERHEAD) {
+            int length = buffer.getInt(position);
+            if (length < 0 || length > limit - position - RECORD_OVERHEAD) {
+                break;
+            }
+            CRC32 crc = new CRC32();
+            crc.update(buffer.slice(position + Integer.BYTES, 1 + HASH_BYTES + length));
+            if ((int) crc.getValue() != buffer.getInt(position + HEADER_BYTES + length)) {
+                break;
+            }
+            if (buffer.get(position + Integer.BYTES) == FORMAT_VERSION) {
+                buffer.get(position + Integer.BYTES + 1, hash);
+                String key = toHex(hash);
+                // Keep the position of the first occurrence, but point it at the latest record
+                index.put(key, new long[]{position + HEADER_BYTES, length});
+            }
+            position += RECORD_OVERHEAD + length;
+        }
+        return position;
+    }
+
+    private static byte[] encode(SchemaAnalysis analysis, SchemaFingerprint fingerprint, Relation relation) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(analysis.getCandidateKeys().size());
+        for (Set<String> key : analysis.getCandidateKeys()) {
+            writeAttributes(out, key, fingerprint);
+        }
+        out.writeUTF(analysis.getNormalForm());
+        writeFds(out, analysis.getMinimalBasis(), fingerprint);
+        // 3NF relations have fixed names, BCNF relations are named after the decomposed relation
+        writeRelations(out, analysis.getThirdNF(), "", fingerprint);
+        writeRelations(out, analysis.getBCNF(), relation.getName(), fingerprint);
+        writeReport(out, analysis.getThirdNFReport(), fingerprint);
+        writeReport(out, analysis.getBCNFReport(), fingerprint);
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static SchemaAnalysis decode(byte[] payload, SchemaFingerprint fingerprint, Relation relation) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        int keyCount = in.readInt();
+        List<Set<String>> keys = new ArrayList<>(keyCount);
+        for (int i = 0; i < keyCount; i++) {
+            keys.add(readAttributes(in, fingerprint));
+        }
+        String normalForm = in.readUTF();
+        List<FunctionalDependency> minimalBasis = readFds(in, fingerprint);
+        List<Relation> thirdNF = readRelations(in, "", fingerprint, relation);
+        List<Relation> bcnf = readRelations(in, relation.getName(), fingerprint, relation);
+        DecompositionReport thirdNFReport = readReport(in, fingerprint);
+        DecompositionReport bcnfReport = readReport(in, fingerprint);
+        return new SchemaAnalysis(keys, normalForm, minimalBasis, thirdNF, bcnf, thirdNFReport, bcnfReport);
+    }
+
+    private static void writeAttributes(DataOutputStream out, Set<String> attributes, SchemaFingerprint fingerprint) throws IOException {
+        out.writeInt(attributes.size());
+        for (String attribute : attributes) {
+            int position = fingerprint.positionOf(attribute);
+            if (position < 0) {
+                throw new IllegalArgumentException("Attribute " + attribute + " is not part of the schema");
+            }
+            out.writeInt(position);
+        }
+    }
+
+    private static Set<String> readAttributes(DataInputStream in, SchemaFingerprint fingerprint) throws IOException {
+        int count = in.readInt();
+        Set<String> attributes = new HashSet<>();
+        for (int i = 0; i < count; i++) {
+            int position = in.readInt();
+            if (position < 0 || position >= fingerprint.getAttributeCount()) {
+                throw new IOException("Stored result refers to attribute " + position + " of a schema with "
+                        + fingerprint.getAttributeCount());
+            }
+            attributes.add(fingerprint.nameOf(position));
+        }
+        return attributes;
+    }
+
+    private static void writeFds(DataOutputStream out, List<FunctionalDependency> fds, SchemaFingerprint fingerprint) throws IOException {
+        out.writeInt(fds.size());
+        for (FunctionalDependency fd : fds) {
+            writeAttributes(out, fd.getLeft(), fingerprint);
+            writeAttributes(out, fd.getRight(), fingerprint);
+        }
+    }
+
+    private static List<FunctionalDependency> readFds(DataInputStream in, SchemaFingerprint fingerprint) throws IOException {
+        int count = in.readInt();
+        List<FunctionalDependency> fds = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            fds.add(new FunctionalDependency(readAttributes(in, fingerprint), readAttributes(in, fingerprint)));
+        }
+        return fds;
+    }
+
+    // Names starting with 'prefix' are stored without it, so they follow the name of the relation on lookup
+    private static void writeRelations(DataOutputStream out, List<Relation> relations, String prefix, SchemaFingerprint fingerprint) throws IOException {
+        out.writeInt(relations.size());
+        for (Relation relation : relations) {
+            boolean relative = !prefix.isEmpty() && relation.getName().startsWith(prefix);
+            out.writeBoolean(relative);
+            out.writeUTF(relative ? relation.getName().substring(prefix.length()) : relation.getName());
+            writeAttributes(out, relation.getAttributes(), fingerprint);
+        }
+    }
+
+    private static List<Relation> readRelations(DataInputStream in, String prefix, SchemaFingerprint fingerprint, Relation decomposed) throws IOException {
+        int count = in.readInt();
+        List<Relation> relations = new ArrayList<>(count);
+        AttributeUniverse universe = decomposed.getUniverse();
+        for (int i = 0; i < count; i++) {
+            boolean relative = in.readBoolean();
+            String name = relative ? prefix + in.readUTF() : in.readUTF();
+            relations.add(new Relation(name, universe, universe.toAttributeSet(readAttributes(in, fingerprint))));
+        }
+        return relations;
+    }
+
+    private static void writeReport(DataOutputStream out, DecompositionReport report, SchemaFingerprint fingerprint) throws IOException {
+        out.writeBoolean(report.isLossless());
+        writeFds(out, report.getLostDependencies(), fingerprint);
+    }
+
+    private static DecompositionReport readReport(DataInputStream in, SchemaFingerprint fingerprint) throws IOException {
+        boolean lossless = in.readBoolean();
+        return new DecompositionReport(lossless, readFds(in, fingerprint));
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return hex.toString();
+    }
+
+    private static byte[] fromHex(String hex) {
+        byte[] bytes = new byte[hex.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) Integer.parseInt(hex, 2 * i, 2 * i + 2, 16);
+        }
+        return bytes;
+    }
+}
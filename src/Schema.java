@@ -0,0 +1,27 @@
+import java.util.List;
+
+/**
+ * A relation together with the FDs that hold on it.
+ */
+public class Schema {
+    private final Relation relation;
+    private final List<FunctionalDependency> functionalDependencies;
+
+    public Schema(Relation relation, List<FunctionalDependency> functionalDependencies) {
+        this.relation = relation;
+        this.functionalDependencies = functionalDependencies;
+    }
+
+    public Relation getRelation() {
+        return relation;
+    }
+
+    public List<FunctionalDependency> getFunctionalDependencies() {
+        return functionalDependencies;
+    }
+
+    @Override
+    public String toString() {
+        return relation + " " + functionalDependencies;
+    }
+}
@@ -0,0 +1,98 @@
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Everything the batch analysis computes for one schema: candidate keys, normal form, minimal basis, and the
+ * 3NF and BCNF decompositions with their verification. Results can be kept in a {@link ResultStore}.
+ */
+public class SchemaAnalysis {
+    private final List<Set<String>> candidateKeys;
+    private final String normalForm;
+    private final List<FunctionalDependency> minimalBasis;
+    private final List<Relation> thirdNF;
+    private final List<Relation> bcnf;
+    private final DecompositionReport thirdNFReport;
+    private final DecompositionReport bcnfReport;
+
+    public SchemaAnalysis(List<Set<String>> candidateKeys, String normalForm, List<FunctionalDependency> minimalBasis,
+                          List<Relation> thirdNF, List<Relation> bcnf,
+                          DecompositionReport thirdNFReport, DecompositionReport bcnfReport) {
+        this.candidateKeys = candidateKeys;
+        this.normalForm = normalForm;
+        this.minimalBasis = minimalBasis;
+        this.thirdNF = thirdNF;
+        this.bcnf = bcnf;
+        this.thirdNFReport = thirdNFReport;
+        this.bcnfReport = bcnfReport;
+    }
+
+    public static SchemaAnalysis compute(Relation relation, List<FunctionalDependency> fds) {
+        return compute(relation, fds, AnalysisBudget.unlimited()).getValue();
+    }
+
+    /**
+     * Same as {@link #compute(Relation, List)}, but the searches for keys and BCNF splits stop once 'budget' runs
+     * out. An incomplete result's value is null, so that half an analysis is never mistaken for, or stored as, one.
+     */
+    public static PartialResult<SchemaAnalysis> compute(Relation relation, List<FunctionalDependency> fds, AnalysisBudget budget) {
+        PartialResult<List<Set<String>>> keys = RelationKeyUtils.getCandidateKeys(relation, fds, budget);
+        if (!keys.isComplete()) {
+            return PartialResult.incomplete(null, keys.getStopReason());
+        }
+        boolean isBCNF = BCNFUtils.isInBCNF(relation, fds);
+        String normalForm = isBCNF ? "BCNF" : ThirdNFUtils.isIn3NF(relation, fds, keys.getValue()) ? "3NF" : "none";
+        // One minimal basis serves as the result and as the input of the 3NF synthesis
+        List<FunctionalDependency> minimalBasis = ThirdNFUtils.getMinimalBasis(relation.getUniverse(), fds);
+        List<Relation> thirdNF = ThirdNFUtils.decomposeMinimalBasisInto3NF(relation, minimalBasis);
+        PartialResult<List<Relation>> bcnf = BCNFUtils.decomposeRelationIntoBCNF(relation, fds, budget);
+        if (!bcnf.isComplete()) {
+            return PartialResult.incomplete(null, bcnf.getStopReason());
+        }
+        return PartialResult.complete(new SchemaAnalysis(keys.getValue(), normalForm, minimalBasis, thirdNF, bcnf.getValue(),
+                DecompositionVerifier.verify(relation, fds, thirdNF), DecompositionVerifier.verify(relation, fds, bcnf.getValue())));
+    }
+
+    public List<Set<String>> getCandidateKeys() {
+        return candidateKeys;
+    }
+
+    /**
+     * "BCNF", "3NF" or "none".
+     */
+    public String getNormalForm() {
+        return normalForm;
+    }
+
+    public List<FunctionalDependency> getMinimalBasis() {
+        return minimalBasis;
+    }
+
+    public List<Relation> getThirdNF() {
+        return thirdNF;
+    }
+
+    public List<Relation> getBCNF() {
+        return bcnf;
+    }
+
+    public DecompositionReport getThirdNFReport() {
+        return thirdNFReport;
+    }
+
+    public DecompositionReport getBCNFReport() {
+        return bcnfReport;
+    }
+
+    @Override
+    public String toString() {
+        return "SchemaAnalysis{" +
+                "candidateKeys=" + candidateKeys +
+                ", normalForm='" + normalForm + '\'' +
+                ", minimalBasis=" + minimalBasis +
+                ", thirdNF=" + thirdNF +
+                ", bcnf=" + bcnf +
+                ", thirdNFReport=" + thirdNFReport +
+                ", bcnfReport=" + bcnfReport +
+                '}';
+    }
+}
@@ -0,0 +1,267 @@
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Canonical form of a relation and its FDs, and its SHA-256 hash.
+ * <p>
+ * The form doesn't depend on the order of the FDs or of the attributes within them, and the FDs are normalized
+ * first: trivial right side attributes are dropped and FDs with the same left side are merged. Attributes are
+ * replaced by positions 0..n-1 chosen by colour refinement: every attribute starts coloured by whether it is part
+ * of the relation, then is repeatedly recoloured by its colour and the colours of the FDs it occurs in, until the
+ * colouring is stable. Schemas that only differ in attribute names therefore get the same form, except where
+ * refinement can't tell attributes apart (e.g. symmetric ones); then the attribute with the smallest name is given
+ * a colour of its own and refinement goes on, so the form only depends on names through those choices.
+ * The relation's own name is not part of the form.
+ */
+public class SchemaFingerprint {
+    private final String canonicalForm;
+    private final String hash;
+    // Original attribute name at each canonical position
+    private final List<String> attributes;
+    private final Map<String, Integer> positions;
+
+    private SchemaFingerprint(String canonicalForm, String hash, List<String> attributes) {
+        this.canonicalForm = canonicalForm;
+        this.hash = hash;
+        this.attributes = Collections.unmodifiableList(attributes);
+        this.positions = new HashMap<>();
+        for (int i = 0; i < attributes.size(); i++) {
+            positions.put(attributes.get(i), i);
+        }
+    }
+
+    public static SchemaFingerprint of(Relation relation, List<FunctionalDependency> fds) {
+        //Step 1: normalize the FDs, and list every attribute of the relation and the FDs in name order
+        Map<Set<String>, Set<String>> merged = new LinkedHashMap<>();
+        Set<String> names = new TreeSet<>(relation.getAttributes());
+        for (FunctionalDependency fd : fds) {
+            Set<String> right = new HashSet<>(fd.getRight());
+            right.removeAll(fd.getLeft());
+            if (!right.isEmpty()) {
+                merged.computeIfAbsent(fd.getLeft(), left -> new HashSet<>()).addAll(right);
+            }
+            names.addAll(fd.getLeft());
+            names.addAll(fd.getRight());
+        }
+        List<String> byName = new ArrayList<>(names);
+        Map<String, Integer> index = new HashMap<>();
+        for (int i = 0; i < byName.size(); i++) {
+            index.put(byName.get(i), i);
+        }
+        int n = byName.size();
+        int[][] lefts = new int[merged.size()][];
+        int[][] rights = new int[merged.size()][];
+        int f = 0;
+        for (Map.Entry<Set<String>, Set<String>> fd : merged.entrySet()) {
+            lefts[f] = toIndexes(fd.getKey(), index);
+            rights[f] = toIndexes(fd.getValue(), index);
+            f++;
+        }
+        boolean[] inRelation = new boolean[n];
+        for (String attribute : relation.getAttributes()) {
+            inRelation[index.get(attribute)] = true;
+        }
+
+        //Step 2: refine colours until every attribute has its own
+        int[] colours = new int[n];
+        for (int a = 0; a < n; a++) {
+            colours[a] = inRelation[a] ? 1 : 0;
+        }
+        colours = refine(colours, lefts, rights);
+        while (distinct(colours) < n) {
+            colours = refine(individualize(colours), lefts, rights);
+        }
+
+        //Step 3: write out the schema with every attribute replaced by its colour
+        List<String> ordered = new ArrayList<>(Collections.nCopies(n, (String) null));
+        for (int a = 0; a < n; a++) {
+            ordered.set(colours[a], byName.get(a));
+        }
+        TreeSet<String> canonicalFds = new TreeSet<>();
+        for (int i = 0; i < lefts.length; i++) {
+            canonicalFds.add(positionList(lefts[i], colours) + ">" + positionList(rights[i], colours));
+        }
+        int[] relationAttributes = toIndexes(relation.getAttributes(), index);
+        String form = "n=" + n + ";R=" + positionList(relationAttributes, colours) + ";F=" + String.join(";", canonicalFds);
+        return new SchemaFingerprint(form, sha256(form), ordered);
+    }
+
+    private static int[] toIndexes(Set<String> names, Map<String, Integer> index) {
+        int[] result = new int[names.size()];
+        int i = 0;
+        for (String name : names) {
+            result[i++] = index.get(name);
+        }
+        return result;
+    }
+
+    // Sorted positions as "0,3,4"
+    private static String positionList(int[] attributes, int[] colours) {
+        int[] sorted = new int[attributes.length];
+        for (int i = 0; i < attributes.length; i++) {
+            sorted[i] = colours[attributes[i]];
+        }
+        Arrays.sort(sorted);
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < sorted.length; i++) {
+            text.append(i == 0 ? "" : ",").append(sorted[i]);
+        }
+        return text.toString();
+    }
+
+    // Recolours each attribute by its colour and the FDs it occurs in until the number of colours stops growing
+    private static int[] refine(int[] colours, int[][] lefts, int[][] rights) {
+        int n = colours.length;
+        int count = distinct(colours);
+        while (true) {
+            List<List<String>> occurrences = new ArrayList<>(n);
+            for (int a = 0; a < n; a++) {
+                occurrences.add(new ArrayList<>());
+            }
+            for (int i = 0; i < lefts.length; i++) {
+                String fd = positionList(lefts[i], colours) + ">" + positionList(rights[i], colours);
+                for (int a : lefts[i]) {
+                    occurrences.get(a).add("L" + fd);
+                }
+                for (int a : rights[i]) {
+                    occurrences.get(a).add("R" + fd);
+                }
+            }
+            String[] signatures = new String[n];
+            for (int a = 0; a < n; a++) {
+                Collections.sort(occurrences.get(a));
+                // Old colours first, so refinement only ever splits colours and keeps their order
+                signatures[a] = String.format("%08d", colours[a]) + occurrences.get(a);
+            }
+            int[] refined = rank(signatures);
+            int refinedCount = distinct(refined);
+            if (refinedCount == count) {
+                return refined;
+            }
+            colours = refined;
+            count = refinedCount;
+        }
+    }
+
+    // Splits the smallest colour shared by several attributes, giving its attribute with the smallest name a colour of its own
+    private static int[] individualize(int[] colours) {
+        int n = colours.length;
+        int[] sizes = new int[n];
+        for (int colour : colours) {
+            sizes[colour]++;
+        }
+        int shared = 0;
+        while (sizes[shared] < 2) {
+            shared++;
+        }
+        int[] result = new int[n];
+        boolean chosen = false;
+        for (int a = 0; a < n; a++) {
+            // Attributes are in name order, so the first one found has the smallest name
+            result[a] = 2 * colours[a];
+            if (colours[a] == shared && !chosen) {
+                chosen = true;
+            } else if (colours[a] == shared) {
+                result[a]++;
+            }
+        }
+        return rank(result);
+    }
+
+    // Replaces each value by its rank among the distinct values, so colours are always 0..k-1
+    private static int[] rank(int[] values) {
+        String[] text = new String[values.length];
+        for (int i = 0; i < values.length; i++) {
+            text[i] = String.format("%010d", values[i]);
+        }
+        return rank(text);
+    }
+
+    private static int[] rank(String[] values) {
+        String[] sorted = new TreeSet<>(Arrays.asList(values)).toArray(new String[0]);
+        int[] result = new int[values.length];
+        for (int i = 0; i < values.length; i++) {
+            result[i] = Arrays.binarySearch(sorted, values[i]);
+        }
+        return result;
+    }
+
+    private static int distinct(int[] colours) {
+        return (int) Arrays.stream(colours).distinct().count();
+    }
+
+    private static String sha256(String text) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(text.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Normalized schema with attributes written as canonical positions, e.g. "n=3;R=0,1,2;F=0>1;1>2".
+     */
+    public String getCanonicalForm() {
+        return canonicalForm;
+    }
+
+    /**
+     * SHA-256 of the canonical form, as 64 hex digits.
+     */
+    public String getHash() {
+        return hash;
+    }
+
+    public int getAttributeCount() {
+        return attributes.size();
+    }
+
+    /**
+     * Returns the name of the attribute at canonical position 'position' in the schema this fingerprint was taken of.
+     */
+    public String nameOf(int position) {
+        return attributes.get(position);
+    }
+
+    /**
+     * Returns the canonical position of attribute 'name', or -1 if the schema doesn't mention it.
+     */
+    public int positionOf(String name) {
+        Integer position = positions.get(name);
+        return position == null ? -1 : position;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof SchemaFingerprint other)) return false;
+        return hash.equals(other.hash);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return hash;
+    }
+}
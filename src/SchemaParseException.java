@@ -0,0 +1,55 @@
+/**
+ * Thrown when a relation or FD specification can't be parsed.
+ * Carries the offset of the offending character along with its 1-based line and column.
+ */
+public class SchemaParseException extends IllegalArgumentException {
+    private static final long serialVersionUID = 1L;
+
+    private final int position;
+    private final int line;
+    private final int column;
+
+    public SchemaParseException(String message, CharSequence input, int position) {
+        this(message, position, lineOf(input, position), columnOf(input, position));
+    }
+
+    private SchemaParseException(String message, int position, int line, int column) {
+        super(message + " at line " + line + ", column " + column);
+        this.position = position;
+        this.line = line;
+        this.column = column;
+    }
+
+    /**
+     * Offset of the offending character in the parsed input.
+     */
+    public int getPosition() {
+        return position;
+    }
+
+    public int getLine() {
+        return line;
+    }
+
+    public int getColumn() {
+        return column;
+    }
+
+    private static int lineOf(CharSequence input, int position) {
+        int line = 1;
+        for (int i = 0; i < position && i < input.length(); i++) {
+            if (input.charAt(i) == '\n') {
+                line++;
+            }
+        }
+        return line;
+    }
+
+    private static int columnOf(CharSequence input, int position) {
+        int start = Math.min(position, input.length());
+        while (start > 0 && input.charAt(start - 1) != '\n') {
+            start--;
+        }
+        return position - start + 1;
+    }
+}
@@ -0,0 +1,335 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Single-pass parser for relations ("R(A,B,C)") and FD lists over any {@link CharSequence},
+ * including {@link java.nio.CharBuffer}s and memory-mapped files.
+ * <p>
+ * FDs may be written compactly, "AB->C,C->D", or with delimited names, "order_id,line_no -> sku; sku -> price".
+ * FDs are separated by ',', ';' or new lines. Within a right side a ',' continues the side unless the next name
+ * is followed by "->", in which case that name starts the next FD; use ';' or a new line before a left side
+ * with several names. A name that isn't an attribute of the universe passed in, but whose characters all are,
+ * stands for one attribute per character: with A and B known, "AB" is A and B. An unknown single character is a
+ * new attribute, outside the relation. Any other unknown name, such as "ID" when I and D aren't both known, is
+ * rejected, since it can't be told apart from a misspelled attribute. Without a universe, as in
+ * {@link #parseFDs(CharSequence)}, every name longer than one letter is split into letters.
+ * <p>
+ * Names are scanned as index ranges and looked up in the {@link AttributeUniverse} without creating
+ * Strings, so parsing allocates little beyond the resulting FDs. Errors are reported as a
+ * {@link SchemaParseException} with the position of the offending character.
+ */
+public class SchemaParser {
+    private final CharSequence input;
+    private final int end;
+    private final AttributeUniverse universe;
+    // No universe was passed in, so every name is split into single letters
+    private final boolean compact;
+    private int pos;
+
+    private SchemaParser(CharSequence input, AttributeUniverse universe) {
+        this(input, universe, false);
+    }
+
+    private SchemaParser(CharSequence input, AttributeUniverse universe, boolean compact) {
+        this.input = input;
+        this.end = input.length();
+        this.universe = universe;
+        this.compact = compact;
+    }
+
+    /**
+     * Parses "R(A,B,C)". Attributes are separated by commas; duplicates are ignored.
+     */
+    public static Relation parseRelation(CharSequence text) {
+        SchemaParser parser = new SchemaParser(text, null);
+        Relation relation = parser.relation();
+        parser.skipSpace();
+        parser.expectEnd();
+        return relation;
+    }
+
+    /**
+     * Parses a compact FD list such as "AB->C, C->D" into FDs bound to a new universe. Every name is split into
+     * single-letter attributes, so "AB" is A and B; a name with anything but letters is rejected.
+     * FDs over longer names need {@link #parseFDs(CharSequence, AttributeUniverse)}.
+     */
+    public static List<FunctionalDependency> parseFDs(CharSequence text) {
+        return new SchemaParser(text, new AttributeUniverse(), true).fds();
+    }
+
+    /**
+     * Parses an FD list into FDs bound to 'universe'. Unknown single characters are interned, and unknown names
+     * made of known attributes are split, see the class comment.
+     */
+    public static List<FunctionalDependency> parseFDs(CharSequence text, AttributeUniverse universe) {
+        return new SchemaParser(text, universe).fds();
+    }
+
+    /**
+     * Parses an FD list from a file, mapped into memory rather than read into a String.
+     */
+    public static List<FunctionalDependency> parseFDs(Path file, AttributeUniverse universe) throws IOException {
+        return parseFDs(map(file), universe);
+    }
+
+    /**
+     * Parses a relation followed by its FDs, "R(A,B,C); A->B, B->C", with the FDs bound to the relation's universe.
+     */
+    public static Schema parseSchema(CharSequence text) {
+        SchemaParser header = new SchemaParser(text, null);
+        Relation relation = header.relation();
+        header.skipSpace();
+        if (header.pos < header.end && header.input.charAt(header.pos) == ';') {
+            header.pos++;
+        }
+        SchemaParser body = new SchemaParser(text, relation.getUniverse());
+        body.pos = header.pos;
+        return new Schema(relation, body.fds());
+    }
+
+    public static Schema parseSchema(Path file) throws IOException {
+        return parseSchema(map(file));
+    }
+
+    private Relation relation() {
+        skipSpace();
+        int nameStart = pos;
+        int nameEnd = scanName(pos);
+        if (nameEnd == nameStart) {
+            throw error("Expected relation name");
+        }
+        String name = input.subSequence(nameStart, nameEnd).toString();
+        pos = nameEnd;
+        skipSpace();
+        expect('(');
+        Set<String> attributes = new HashSet<>();
+        skipSpace();
+        if (peek() != ')') {
+            while (true) {
+                skipSpace();
+                int start = pos;
+                int stop = scanName(pos);
+                if (stop == start) {
+                    throw error("Expected attribute name");
+                }
+                attributes.add(input.subSequence(start, stop).toString());
+                pos = stop;
+                skipSpace();
+                if (peek() != ',') {
+                    break;
+                }
+                pos++;
+            }
+        }
+        expect(')');
+        return new Relation(name, attributes);
+    }
+
+    private List<FunctionalDependency> fds() {
+        List<FunctionalDependency> fds = new ArrayList<>();
+        while (true) {
+            //Step 1: skip separators between FDs
+            while (pos < end && (Character.isWhitespace(peek()) || peek() == ',' || peek() == ';')) {
+                pos++;
+            }
+            if (pos >= end) {
+                return fds;
+            }
+            //Step 2: left side, arrow, right side
+            AttributeSet left = AttributeSet.empty(universe.size());
+            side(left, false);
+            skipBlank();
+            if (!arrowAt(pos)) {
+                throw error(peek() == 0 ? "Expected '->' before end of input" : "Expected ',' or '->'");
+            }
+            pos += 2;
+            AttributeSet right = AttributeSet.empty(universe.size());
+            side(right, true);
+            fds.add(new FunctionalDependency(universe, left, right));
+            //Step 3: the FD must be followed by a separator
+            skipBlank();
+            char next = peek();
+            if (pos < end && next != ',' && next != ';' && next != '\n') {
+                throw error("Expected ',', ';' or a new line after FD");
+            }
+        }
+    }
+
+    // Reads comma-separated names into 'set'. On a right side, stops before a comma whose next name starts another FD
+    private void side(AttributeSet set, boolean right) {
+        while (true) {
+            skipBlank();
+            int start = pos;
+            int stop = scanName(pos);
+            if (stop == start) {
+                throw error(pos >= end ? "Expected attribute name before end of input" : "Expected attribute name");
+            }
+            resolve(start, stop, set);
+            pos = stop;
+            skipBlank();
+            if (peek() != ',') {
+                return;
+            }
+            if (right) {
+                int nextStart = skipBlank(pos + 1);
+                int nextEnd = scanName(nextStart);
+                if (nextEnd == nextStart || arrowAt(skipBlank(nextEnd))) {
+                    // Trailing comma, or the next name is the left side of another FD
+                    return;
+                }
+            }
+            pos++;
+        }
+    }
+
+    // Adds the attribute(s) named by input[start, end) to 'set'
+    private void resolve(int start, int stop, AttributeSet set) {
+        int id = universe.idOf(input, start, stop);
+        if (id >= 0) {
+            set.add(id);
+            return;
+        }
+        if (stop - start == 1) {
+            set.add(universe.intern(input, start, stop));
+            return;
+        }
+        if (!isCompact(start, stop)) {
+            pos = start;
+            String name = input.subSequence(start, stop).toString();
+            throw error(compact
+                    ? "Expected single-letter attribute names, got '" + name + "'"
+                    : "Unknown attribute '" + name + "'");
+        }
+        for (int i = start; i < stop; i++) {
+            set.add(universe.intern(input, i, i + 1));
+        }
+    }
+
+    // True if input[start, end) spells attributes letter by letter: any letters without a universe, else known ones
+    private boolean isCompact(int start, int stop) {
+        for (int i = start; i < stop; i++) {
+            if (compact ? !Character.isLetter(input.charAt(i)) : universe.idOf(input, i, i + 1) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int scanName(int from) {
+        int i = from;
+        while (i < end && isNameChar(input.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    private static boolean isNameChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '.' || c == '$';
+    }
+
+    private boolean arrowAt(int at) {
+        return at + 1 < end && input.charAt(at) == '-' && input.charAt(at + 1) == '>';
+    }
+
+    // Skips spaces and tabs, but not new lines
+    private void skipBlank() {
+        pos = skipBlank(pos);
+    }
+
+    private int skipBlank(int from) {
+        int i = from;
+        while (i < end && input.charAt(i) != '\n' && Character.isWhitespace(input.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    private void skipSpace() {
+        while (pos < end && Character.isWhitespace(input.charAt(pos))) {
+            pos++;
+        }
+    }
+
+    private char peek() {
+        return pos < end ? input.charAt(pos) : 0;
+    }
+
+    private void expect(char c) {
+        if (pos >= end || input.charAt(pos) != c) {
+            throw error(pos >= end ? "Expected '" + c + "' before end of input" : "Expected '" + c + "'");
+        }
+        pos++;
+    }
+
+    private void expectEnd() {
+        if (pos < end) {
+            throw error("Unexpected '" + peek() + "'");
+        }
+    }
+
+    private SchemaParseException error(String message) {
+        return new SchemaParseException(message, input, pos);
+    }
+
+    // Maps 'file' read-only. ASCII content is read in place; anything else is decoded as UTF-8
+    private static CharSequence map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException(file + " is too large to parse, " + size + " bytes");
+            }
+            ByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            for (int i = 0; i < bytes.limit(); i++) {
+                if (bytes.get(i) < 0) {
+                    return StandardCharsets.UTF_8.decode(bytes);
+                }
+            }
+            return new AsciiSequence(bytes, 0, bytes.limit());
+        }
+    }
+
+    /**
+     * Read-only view of ASCII bytes as characters, without copying them.
+     */
+    private static class AsciiSequence implements CharSequence {
+        private final ByteBuffer bytes;
+        private final int start;
+        private final int length;
+
+        private AsciiSequence(ByteBuffer bytes, int start, int end) {
+            this.bytes = bytes;
+            this.start = start;
+            this.length = end - start;
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return (char) bytes.get(start + index);
+        }
+
+        @Override
+        public CharSequence subSequence(int from, int to) {
+            return new AsciiSequence(bytes, start + from, start + to);
+        }
+
+        @Override
+        public String toString() {
+            byte[] copy = new byte[length];
+            bytes.get(start, copy);
+            return new String(copy, StandardCharsets.US_ASCII);
+        }
+    }
+}
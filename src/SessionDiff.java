@@ -0,0 +1,99 @@
+import java.util.List;
+import java.util.Set;
+
+/**
+ * What one edit of an {@link AnalysisSession} changed: the candidate keys that appeared and disappeared,
+ * the prime attributes gained and lost, and the normal form before and after.
+ */
+public class SessionDiff {
+    private final FunctionalDependency change;
+    private final boolean added;
+    private final List<Set<String>> addedKeys;
+    private final List<Set<String>> removedKeys;
+    private final Set<String> addedPrimeAttributes;
+    private final Set<String> removedPrimeAttributes;
+    private final String normalFormBefore;
+    private final String normalFormAfter;
+
+    public SessionDiff(FunctionalDependency change, boolean added,
+                       List<Set<String>> addedKeys, List<Set<String>> removedKeys,
+                       Set<String> addedPrimeAttributes, Set<String> removedPrimeAttributes,
+                       String normalFormBefore, String normalFormAfter) {
+        this.change = change;
+        this.added = added;
+        this.addedKeys = addedKeys;
+        this.removedKeys = removedKeys;
+        this.addedPrimeAttributes = addedPrimeAttributes;
+        this.removedPrimeAttributes = removedPrimeAttributes;
+        this.normalFormBefore = normalFormBefore;
+        this.normalFormAfter = normalFormAfter;
+    }
+
+    /**
+     * The FD that was added or removed.
+     */
+    public FunctionalDependency getChange() {
+        return change;
+    }
+
+    /**
+     * True if {@link #getChange()} was added, false if it was removed.
+     */
+    public boolean isAdded() {
+        return added;
+    }
+
+    public List<Set<String>> getAddedKeys() {
+        return addedKeys;
+    }
+
+    public List<Set<String>> getRemovedKeys() {
+        return removedKeys;
+    }
+
+    public Set<String> getAddedPrimeAttributes() {
+        return addedPrimeAttributes;
+    }
+
+    public Set<String> getRemovedPrimeAttributes() {
+        return removedPrimeAttributes;
+    }
+
+    /**
+     * "BCNF", "3NF" or "none", as in {@link SchemaAnalysis#getNormalForm()}.
+     */
+    public String getNormalFormBefore() {
+        return normalFormBefore;
+    }
+
+    public String getNormalFormAfter() {
+        return normalFormAfter;
+    }
+
+    public boolean isKeysChanged() {
+        return !addedKeys.isEmpty() || !removedKeys.isEmpty();
+    }
+
+    public boolean isNormalFormChanged() {
+        return !normalFormBefore.equals(normalFormAfter);
+    }
+
+    /**
+     * Returns false if the edit changed none of the keys, prime attributes and normal form.
+     */
+    public boolean hasChanges() {
+        return isKeysChanged() || isNormalFormChanged();
+    }
+
+    @Override
+    public String toString() {
+        return "SessionDiff{" +
+                (added ? "added=" : "removed=") + change +
+                ", addedKeys=" + addedKeys +
+                ", removedKeys=" + removedKeys +
+                ", addedPrimeAttributes=" + addedPrimeAttributes +
+                ", removedPrimeAttributes=" + removedPrimeAttributes +
+                ", normalForm=" + normalFormBefore + (isNormalFormChanged() ? " -> " + normalFormAfter : "") +
+                '}';
+    }
+}
@@ -0,0 +1,156 @@
+import java.util.Spliterator;
+import java.util.function.LongConsumer;
+import java.util.stream.LongStream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Lazily enumerates the subsets of {0, ..., n-1} as bit masks, in increasing size.
+ * Subsets of the same size come in increasing numeric order, stepped with Gosper's hack, so each
+ * step takes O(1) time and memory. Splitting jumps straight to the middle of the remaining range by
+ * unranking it in the combinatorial number system, which lets parallel streams share the work.
+ */
+public class SubsetSpliterator implements Spliterator.OfLong {
+    // Largest n whose 2^n subsets can still be counted in a long
+    public static final int MAX_ATTRIBUTES = 62;
+
+    private static final long[][] BINOMIAL = new long[MAX_ATTRIBUTES + 1][MAX_ATTRIBUTES + 1];
+
+    static {
+        for (int i = 0; i <= MAX_ATTRIBUTES; i++) {
+            BINOMIAL[i][0] = 1;
+            for (int j = 1; j <= i; j++) {
+                BINOMIAL[i][j] = BINOMIAL[i - 1][j - 1] + BINOMIAL[i - 1][j];
+            }
+        }
+    }
+
+    private final int n;
+    private int size;
+    // Rank of 'mask' among the subsets of 'size' elements
+    private long rank;
+    private long mask;
+    private long remaining;
+
+    private SubsetSpliterator(int n, int size, long rank, long mask, long remaining) {
+        this.n = n;
+        this.size = size;
+        this.rank = rank;
+        this.mask = mask;
+        this.remaining = remaining;
+    }
+
+    /**
+     * All non-empty subsets of n elements, smallest first.
+     */
+    public static SubsetSpliterator of(int n) {
+        return ofSizes(n, 1, n);
+    }
+
+    /**
+     * All subsets of n elements with between 'minSize' and 'maxSize' elements, smallest first.
+     */
+    public static SubsetSpliterator ofSizes(int n, int minSize, int maxSize) {
+        if (n < 0 || n > MAX_ATTRIBUTES) {
+            throw new IllegalArgumentException("Cannot enumerate subsets of " + n + " attributes, at most " + MAX_ATTRIBUTES + " are supported");
+        }
+        minSize = Math.max(minSize, 0);
+        maxSize = Math.min(maxSize, n);
+        long count = 0;
+        for (int k = minSize; k <= maxSize; k++) {
+            count += BINOMIAL[n][k];
+        }
+        return new SubsetSpliterator(n, minSize, 0, (1L << minSize) - 1, count);
+    }
+
+    public static LongStream stream(int n, boolean parallel) {
+        return StreamSupport.longStream(of(n), parallel);
+    }
+
+    public static LongStream stream(int n, int minSize, int maxSize, boolean parallel) {
+        return StreamSupport.longStream(ofSizes(n, minSize, maxSize), parallel);
+    }
+
+    @Override
+    public boolean tryAdvance(LongConsumer action) {
+        if (remaining == 0) {
+            return false;
+        }
+        long current = mask;
+        step();
+        action.accept(current);
+        return true;
+    }
+
+    @Override
+    public void forEachRemaining(LongConsumer action) {
+        while (remaining > 0) {
+            long current = mask;
+            step();
+            action.accept(current);
+        }
+    }
+
+    private void step() {
+        if (--remaining == 0) {
+            return;
+        }
+        if (++rank < BINOMIAL[n][size]) {
+            // Gosper's hack: next larger mask with the same number of bits
+            long lowest = mask & -mask;
+            long ripple = mask + lowest;
+            mask = (((ripple ^ mask) >>> 2) / lowest) | ripple;
+        } else {
+            size++;
+            rank = 0;
+            mask = (1L << size) - 1;
+        }
+    }
+
+    @Override
+    public Spliterator.OfLong trySplit() {
+        if (remaining < 2) {
+            return null;
+        }
+        long half = remaining / 2;
+        SubsetSpliterator prefix = new SubsetSpliterator(n, size, rank, mask, half);
+
+        long skipped = rank + half;
+        int newSize = size;
+        while (skipped >= BINOMIAL[n][newSize]) {
+            skipped -= BINOMIAL[n][newSize];
+            newSize++;
+        }
+        size = newSize;
+        rank = skipped;
+        mask = unrank(newSize, skipped);
+        remaining -= half;
+        return prefix;
+    }
+
+    /**
+     * Returns the subset of 'k' elements at position 'rank' in increasing numeric order (colex order).
+     */
+    private long unrank(int k, long rank) {
+        long result = 0;
+        int c = n - 1;
+        for (int i = k; i > 0; i--) {
+            while (BINOMIAL[c][i] > rank) {
+                c--;
+            }
+            result |= 1L << c;
+            rank -= BINOMIAL[c][i];
+            c--;
+        }
+        return result;
+    }
+
+    @Override
+    public long estimateSize() {
+        return remaining;
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED | SIZED | SUBSIZED | DISTINCT | NONNULL | IMMUTABLE;
+    }
+}
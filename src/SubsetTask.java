@@ -0,0 +1,87 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.LongPredicate;
+import java.util.function.LongUnaryOperator;
+
+/**
+ * Fork/join task over a range of subset masks from a {@link SubsetSpliterator}.
+ * The range is split in half until it is small enough to process on one thread. Results are merged
+ * left before right, so the output is in the same order as a sequential walk of the subsets.
+ */
+@SuppressWarnings("serial") // fork/join tasks are never serialized
+public class SubsetTask extends RecursiveTask<List<long[]>> {
+    // Below this many subsets a range is processed on the current thread
+    private static final long THRESHOLD = 1 << 12;
+
+    private final Spliterator.OfLong subsets;
+    private final LongPredicate filter;
+    private final LongUnaryOperator mapper;
+
+    private SubsetTask(Spliterator.OfLong subsets, LongPredicate filter, LongUnaryOperator mapper) {
+        this.subsets = subsets;
+        this.filter = filter;
+        this.mapper = mapper;
+    }
+
+    /**
+     * Returns 'mapper' applied to every subset accepted by 'filter', in enumeration order.
+     */
+    public static long[] run(ForkJoinPool pool, SubsetSpliterator subsets, LongPredicate filter, LongUnaryOperator mapper) {
+        List<long[]> chunks = pool.invoke(new SubsetTask(subsets, filter, mapper));
+        int total = 0;
+        for (long[] chunk : chunks) {
+            total += chunk.length;
+        }
+        long[] result = new long[total];
+        int offset = 0;
+        for (long[] chunk : chunks) {
+            System.arraycopy(chunk, 0, result, offset, chunk.length);
+            offset += chunk.length;
+        }
+        return result;
+    }
+
+    /**
+     * Returns the subsets accepted by 'filter', in enumeration order.
+     */
+    public static long[] filter(ForkJoinPool pool, SubsetSpliterator subsets, LongPredicate filter) {
+        return run(pool, subsets, filter, LongUnaryOperator.identity());
+    }
+
+    /**
+     * Returns 'mapper' applied to every subset, in enumeration order.
+     */
+    public static long[] map(ForkJoinPool pool, SubsetSpliterator subsets, LongUnaryOperator mapper) {
+        return run(pool, subsets, mask -> true, mapper);
+    }
+
+    @Override
+    protected List<long[]> compute() {
+        if (subsets.estimateSize() > THRESHOLD) {
+            Spliterator.OfLong prefix = subsets.trySplit();
+            if (prefix != null) {
+                SubsetTask left = new SubsetTask(prefix, filter, mapper);
+                left.fork();
+                List<long[]> right = new SubsetTask(subsets, filter, mapper).compute();
+                List<long[]> result = new ArrayList<>(left.join());
+                result.addAll(right);
+                return result;
+            }
+        }
+
+        long[] buffer = new long[(int) subsets.estimateSize()];
+        int[] count = new int[1];
+        subsets.forEachRemaining((long mask) -> {
+            if (filter.test(mask)) {
+                buffer[count[0]++] = mapper.applyAsLong(mask);
+            }
+        });
+        List<long[]> result = new ArrayList<>(1);
+        result.add(count[0] == buffer.length ? buffer : Arrays.copyOf(buffer, count[0]));
+        return result;
+    }
+}
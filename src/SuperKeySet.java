@@ -0,0 +1,150 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * The super keys of a relation, stored implicitly as the antichain of its candidate keys.
+ * Every super key is a superset of some candidate key, so "is X a super key" and "is a prime" only look at
+ * the keys, never at the up to 2^n super keys themselves. When the relation's attribute ids are all below 64
+ * the keys are also kept as single-word masks, and a super key test is one AND per key.
+ * Super keys can still be listed with {@link #stream()}, which generates them lazily.
+ */
+public class SuperKeySet {
+    private final Relation relation;
+    private final List<AttributeSet> keys = new ArrayList<>();
+    // Keys as masks, or null if the relation has ids of 64 and above
+    private long[] masks;
+    private final AttributeSet prime;
+
+    /**
+     * Creates an empty set for 'relation'; keys are added with {@link #add}.
+     */
+    SuperKeySet(Relation relation) {
+        this.relation = relation;
+        this.masks = relation.getAttributeSet().nextSetBit(64) < 0 ? new long[4] : null;
+        this.prime = AttributeSet.empty(relation.getUniverse().size());
+    }
+
+    /**
+     * Creates the set spanned by 'candidateKeys', which must be the candidate keys of 'relation'.
+     */
+    public SuperKeySet(Relation relation, List<AttributeSet> candidateKeys) {
+        this(relation);
+        for (AttributeSet key : candidateKeys) {
+            addKey(key);
+        }
+    }
+
+    /**
+     * Adds a candidate key. It must not be a superset of a key already in the set.
+     */
+    void add(AttributeSet key) {
+        addKey(key);
+    }
+
+    private void addKey(AttributeSet key) {
+        if (masks != null) {
+            if (keys.size() == masks.length) {
+                masks = Arrays.copyOf(masks, masks.length * 2);
+            }
+            masks[keys.size()] = key.toMask();
+        }
+        keys.add(key);
+        prime.addAll(key);
+    }
+
+    public Relation getRelation() {
+        return relation;
+    }
+
+    /**
+     * Returns the candidate keys, in the order they were found.
+     */
+    public List<AttributeSet> getCandidateKeys() {
+        return Collections.unmodifiableList(keys);
+    }
+
+    /**
+     * Returns true if 'attributes' contains a candidate key. Takes time proportional to the number of keys.
+     */
+    public boolean isSuperKey(AttributeSet attributes) {
+        if (masks != null && attributes.nextSetBit(64) < 0) {
+            long mask = attributes.toMask();
+            for (int i = 0; i < keys.size(); i++) {
+                if ((masks[i] & ~mask) == 0) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        for (AttributeSet key : keys) {
+            if (attributes.containsAll(key)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public boolean isSuperKey(Set<String> attributes) {
+        AttributeUniverse universe = relation.getUniverse();
+        AttributeSet set = AttributeSet.empty(universe.size());
+        for (String attribute : attributes) {
+            int id = universe.idOf(attribute);
+            if (id >= 0) {
+                set.add(id);
+            }
+        }
+        return isSuperKey(set);
+    }
+
+    /**
+     * Returns true if attribute 'id' is part of some candidate key.
+     */
+    public boolean isPrime(int id) {
+        return prime.contains(id);
+    }
+
+    /**
+     * Returns the union of the candidate keys. The set must not be modified.
+     */
+    public AttributeSet getPrimeAttributes() {
+        return prime;
+    }
+
+    /**
+     * Lazily generates every super key exactly once: for each key K in turn, the supersets of K that contain
+     * no earlier key. Supersets of one key come smallest first. Needs at most 62 attributes outside each key.
+     */
+    public Stream<AttributeSet> stream() {
+        AttributeSet all = relation.getAttributeSet();
+        return IntStream.range(0, keys.size()).boxed().flatMap(i -> {
+            AttributeSet key = keys.get(i);
+            AttributeSet rest = all.difference(key);
+            return RelationKeyUtils.streamSubsets(rest, 0, rest.cardinality(), false)
+                    .map(extra -> extra.union(key))
+                    .filter(superKey -> !containsEarlierKey(superKey, i));
+        });
+    }
+
+    private boolean containsEarlierKey(AttributeSet attributes, int end) {
+        for (int j = 0; j < end; j++) {
+            if (attributes.containsAll(keys.get(j))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        List<Set<String>> names = new ArrayList<>(keys.size());
+        for (AttributeSet key : keys) {
+            names.add(relation.getUniverse().toNames(key));
+        }
+        return "SuperKeySet" + names;
+    }
+}
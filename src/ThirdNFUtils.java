@@ -1,7 +1,6 @@
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.function.Function;
-import java.util.function.Predicate;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 import java.util.stream.Stream;
 
 import static java.util.stream.Collectors.*;
@@ -16,7 +15,7 @@ public class ThirdNFUtils {
         System.out.println("Parsed Relation: " + relation);
 
         // Parse the functional dependencies
-        List<FunctionalDependency> fdList = FunctionalDependency.parseFDs(fdsStr);
+        List<FunctionalDependency> fdList = FunctionalDependency.parseFDs(fdsStr, relation.getUniverse().copy());
         System.out.println("Parsed FDs:");
         for (FunctionalDependency fd : fdList) {
             System.out.println("  " + fd);
@@ -26,142 +25,243 @@ public class ThirdNFUtils {
         System.out.println("Candidate Keys: " + RelationKeyUtils.getCandidateKeys(relation, fdList));
         System.out.println("3NF: " + isIn3NF(relation, fdList));
         System.out.println("Minimal Basis: " + getMinimalBasis(fdList));
-        System.out.println("Decomposed 3NF: " + decomposeRelationInto3NF(relation, fdList));
+        List<Relation> decomposed3NFRelations = decomposeRelationInto3NF(relation, fdList);
+        System.out.println("Decomposed 3NF: " + decomposed3NFRelations);
+        System.out.println("Verified: " + DecompositionVerifier.verify(relation, fdList, decomposed3NFRelations));
     }
 
     public static List<Relation> decomposeRelationInto3NF(Relation relation, List<FunctionalDependency> fds) {
-        //Step 1: Derive a minimal basis of FDs
-        List<FunctionalDependency> minimalBasis = getMinimalBasis(fds);
-
-        //Step 2: In the minimal basis, combine the FDs whose left hand sides are the same
-        List<FunctionalDependency> combineLhsFDs = minimalBasis.stream()
-                .collect(
-                        groupingBy(FunctionalDependency::getLeft,
-                        flatMapping(fd -> fd.getRight().stream(), toSet()))
-                ).entrySet() //Convert back to List<FunctionalDependency> from Map<Set<String>, Set<String>>
-                .stream().map(entry -> new FunctionalDependency(entry.getKey(), entry.getValue()))
-                .toList();
-
-        //Step 3: Create a table for each FD remained
         List<Relation> relations = new ArrayList<>();
+        decomposeRelationInto3NF(relation, fds, relations::add);
+        return relations;
+    }
 
-        int i = 1;
-        for (FunctionalDependency fd : combineLhsFDs) {
-            relations.add(new Relation("R_"+i++, Stream.of(fd.getLeft(), fd.getRight())
-                    .flatMap(Set::stream)
-                    .collect(toSet())));
+    /**
+     * 3NF synthesis that hands each table to 'sink' as soon as it is known to be kept, named "R_1", "R_2", ...
+     * in that order. Tables are considered largest first, so a table can only be contained in one already emitted;
+     * duplicates and contained tables are found in an {@link AttributeSetIndex} of the emitted tables instead of
+     * comparing every pair. Only the index and the grouped minimal basis are kept in memory.
+     * A key table, if needed, is one candidate key from {@link RelationKeyUtils#findCandidateKey}, not a full key search.
+     */
+    public static void decomposeRelationInto3NF(Relation relation, List<FunctionalDependency> fds, Consumer<Relation> sink) {
+        AnalysisListener listener = AnalysisListener.shared();
+        long start = listener.phaseStarted(AnalysisPhase.THIRD_NF_DECOMPOSITION);
+        try {
+            // Tables keep the attributes FDs reach outside the relation, so they share the universe the FDs are bound to
+            AttributeUniverse universe = relation.getUniverse().covering(fds);
+
+            //Step 1: Derive a minimal basis of FDs
+            synthesize(relation, universe, getMinimalBasis(universe, fds), sink);
+        } finally {
+            listener.phaseFinished(AnalysisPhase.THIRD_NF_DECOMPOSITION, start);
         }
+    }
 
-        //Step 4: If none of the tables contains a key of the original table R, create a table that contains a key of R
-        List<Set<String>> candidateKeys = RelationKeyUtils.getCandidateKeys(relation, minimalBasis);
-        boolean hasKey = relations.stream().anyMatch(
-                rel -> candidateKeys.stream().anyMatch(key -> rel.getAttributes().containsAll(key))
-        );
-
-        // If none of the tables includes at least one candidate key, we add a new table containing one
-        if (!hasKey && !candidateKeys.isEmpty()) {
-            // e.g. pick the first candidate key, or pick any if multiple
-            Set<String> firstKey = candidateKeys.getFirst();
-            relations.add(new Relation("R_" + i++, firstKey));
+    /**
+     * Same as {@link #decomposeRelationInto3NF(Relation, List)}, but starts from 'minimalBasis', which must already
+     * be a minimal basis of the FDs, e.g. from {@link #getMinimalBasis(AttributeUniverse, List)}.
+     */
+    public static List<Relation> decomposeMinimalBasisInto3NF(Relation relation, List<FunctionalDependency> minimalBasis) {
+        AnalysisListener listener = AnalysisListener.shared();
+        long start = listener.phaseStarted(AnalysisPhase.THIRD_NF_DECOMPOSITION);
+        try {
+            List<Relation> relations = new ArrayList<>();
+            synthesize(relation, relation.getUniverse().covering(minimalBasis), minimalBasis, relations::add);
+            return relations;
+        } finally {
+            listener.phaseFinished(AnalysisPhase.THIRD_NF_DECOMPOSITION, start);
         }
-
-        //Step 5: Remove redundant tables
-        // A table is redundant if it is a duplicate or its attribute set is a subset of another table's attribute set
-
-        //Remove duplicate tables
-        relations = relations.stream()
-                .filter(distinctByKey(Relation::getAttributes))
-                .toList();
-
-        //Remove table that is a subset of another table
-        List<Relation> finalRelations = new ArrayList<>(relations);
-        finalRelations.removeIf(r ->
-                finalRelations.stream().anyMatch(o ->
-                        o != r && o.getAttributes().containsAll(r.getAttributes())
-                )
-        );
-
-        return relations;
-
     }
 
-    public static List<FunctionalDependency> getMinimalBasis(List<FunctionalDependency> fds){
-        //Step 1: Transform the FDs, so that each right hand side contains only one attribute
-        List<FunctionalDependency> step1Transformation = new ArrayList<>();
+    private static void synthesize(Relation relation, AttributeUniverse universe, List<FunctionalDependency> minimalBasis,
+                                   Consumer<Relation> sink) {
+        AttributeSet attributes = relation.getAttributeSet();
 
-        for (FunctionalDependency fd : fds) {
-            fd.getRight().forEach(a ->
-                    step1Transformation.add(new FunctionalDependency(fd.getLeft(), Set.of(a)))
-            );
+        //Step 2: In the minimal basis, combine the FDs whose left hand sides are the same
+        Map<AttributeSet, AttributeSet> tablesByLeft = new LinkedHashMap<>();
+        AttributeSet derived = AttributeSet.empty(universe.size());
+        for (FunctionalDependency fd : minimalBasis) {
+            AttributeSet left = fd.getLeftSet(universe);
+            tablesByLeft.computeIfAbsent(left, AttributeSet::copy).addAll(fd.getRightSet(universe));
+            derived.addAll(fd.getRightSet(universe));
+        }
+        // Attributes no FD derives are in every key, so a table missing one of them needs no closure to rule out
+        AttributeSet core = attributes.difference(derived);
+
+        //Step 3: Create a table for each FD remained, largest first, skipping tables contained in an earlier one
+        List<AttributeSet> tables = new ArrayList<>(tablesByLeft.values());
+        tables.sort(Comparator.comparingInt(AttributeSet::cardinality).reversed());
+        AttributeSetIndex emitted = new AttributeSetIndex();
+        ClosureEngine engine = ClosureEngine.prepare(universe, minimalBasis, null);
+        boolean hasKey = false;
+        int i = 1;
+        for (AttributeSet table : tables) {
+            if (emitted.containsSuperset(table)) {
+                continue;
+            }
+            emitted.add(table);
+            hasKey = hasKey || (table.containsAll(core) && engine.closureOf(table.intersection(attributes)).containsAll(attributes));
+            sink.accept(new Relation("R_" + i++, universe, table));
         }
 
-        //Step 2: Remove redundant FDs
-        List<FunctionalDependency> step2Transformation = new ArrayList<>(step1Transformation);
-        for (FunctionalDependency fd : step1Transformation) {
-            step2Transformation.remove(fd);
+        //Step 4: If none of the tables contains a key of the original table R, create a table that contains a key of R
+        // A minimal key can't contain a table X u Y, as X -> Y would make it smaller, so this table is never redundant
+        if (!hasKey) {
+            AttributeSet key = RelationKeyUtils.findCandidateKey(relation, engine);
+            sink.accept(new Relation("R_" + i, universe, key));
+        }
+    }
 
-            //Compute new closure
-            Set<String> closure = RelationKeyUtils.getClosureFromAttributes(fd.getLeft(), step2Transformation).getClosure();
+    public static List<FunctionalDependency> getMinimalBasis(List<FunctionalDependency> fds){
+        AttributeUniverse universe = AttributeUniverse.of(fds.stream()
+                .flatMap(fd -> Stream.of(fd.getLeft(), fd.getRight()))
+                .flatMap(Set::stream)
+                .collect(toSet()));
+        return getMinimalBasis(universe, fds);
+    }
 
-            //Check redundant
-            if (!closure.containsAll(fd.getRight())) {
-                //FD is not redundant because we cannot get the same attributes from the new sets
+    /**
+     * Computes a minimal basis (canonical cover) of 'fds' over the attribute ids of 'universe', or of a copy of it
+     * if the FDs mention attributes it doesn't have (see {@link AttributeUniverse#covering}).
+     * Both passes run on a prepared {@link ClosureEngine}, so every closure is linear in the size of the FDs:
+     * left sides are reduced against the unchanged input (reducing an FD keeps the set equivalent),
+     * then each FD is switched off in turn and left off if the others still imply it.
+     * Left sides are reduced before redundant FDs are removed; in the other order a reduced FD can make
+     * another one redundant after it was already kept.
+     */
+    public static List<FunctionalDependency> getMinimalBasis(AttributeUniverse universe, List<FunctionalDependency> fds){
+        return minimalBasis(universe.covering(fds), fds);
+    }
 
-                //Add back the FD
-                step2Transformation.add(fd);
+    private static List<FunctionalDependency> minimalBasis(AttributeUniverse universe, List<FunctionalDependency> fds){
+        AnalysisListener listener = AnalysisListener.shared();
+        long start = listener.phaseStarted(AnalysisPhase.MINIMAL_BASIS);
+        try {
+            //Step 1: Transform the FDs, so that each right hand side contains only one attribute
+            Set<FunctionalDependency> step1Transformation = new LinkedHashSet<>();
+            for (FunctionalDependency fd : fds) {
+                AttributeSet left = fd.getLeftSet(universe);
+                AttributeSet right = fd.getRightSet(universe);
+                for (int a = right.nextSetBit(0); a >= 0; a = right.nextSetBit(a + 1)) {
+                    //Trivial FDs are always redundant
+                    if (!left.contains(a)) {
+                        step1Transformation.add(new FunctionalDependency(universe, left, AttributeSet.of(a)));
+                    }
+                }
             }
-        }
-
-        //Step 3: Remove redundant attributes on the left hand side of each FD
-        List<FunctionalDependency> step3Transformation = new ArrayList<>(step2Transformation);
-        for (FunctionalDependency fd : step2Transformation.stream()
-                .filter(fd -> fd.getLeft().size() > 1).toList()) {
-            Set<String> leftAttributes = new HashSet<>(fd.getLeft());
-            for(String attribute : fd.getLeft()) {
-                leftAttributes.remove(attribute);
-
-                Set<String> closure = RelationKeyUtils.getClosureFromAttributes(leftAttributes, step3Transformation).getClosure();
-                if(!closure.containsAll(fd.getRight())) {
-                    //Attribute is not redundant because we cannot get the same attributes
-                    //Add back the attribute
-                    leftAttributes.add(attribute);
+            List<FunctionalDependency> singleRhsFDs = new ArrayList<>(step1Transformation);
+
+            //Step 2: Remove redundant attributes on the left hand side of each FD
+            ClosureEngine engine = ClosureEngine.prepare(universe, singleRhsFDs, null);
+            Set<FunctionalDependency> step2Transformation = new LinkedHashSet<>();
+            for (FunctionalDependency fd : singleRhsFDs) {
+                AttributeSet original = fd.getLeftSet(universe);
+                AttributeSet right = fd.getRightSet(universe);
+                AttributeSet leftAttributes = original.copy();
+                if (original.cardinality() > 1) {
+                    for (int a = original.nextSetBit(0); a >= 0; a = original.nextSetBit(a + 1)) {
+                        leftAttributes.remove(a);
+                        if (!engine.closureOf(leftAttributes).containsAll(right)) {
+                            //Attribute is not redundant because we cannot get the same attributes
+                            //Add back the attribute
+                            leftAttributes.add(a);
+                        }
+                    }
+                }
+                step2Transformation.add(leftAttributes.equals(original) ? fd : new FunctionalDependency(universe, leftAttributes, right));
+            }
+            List<FunctionalDependency> reducedFDs = new ArrayList<>(step2Transformation);
+
+            //Step 3: Remove redundant FDs
+            ClosureEngine reducedEngine = ClosureEngine.prepare(universe, reducedFDs, null);
+            List<FunctionalDependency> step3Transformation = new ArrayList<>();
+            for (int i = 0; i < reducedFDs.size(); i++) {
+                FunctionalDependency fd = reducedFDs.get(i);
+                reducedEngine.setEnabled(i, false);
+
+                //Check redundant
+                if (!reducedEngine.closureOf(fd.getLeftSet(universe)).containsAll(fd.getRightSet(universe))) {
+                    //FD is not redundant because we cannot get the same attributes from the remaining FDs
+                    reducedEngine.setEnabled(i, true);
+                    step3Transformation.add(fd);
                 }
             }
-            //Update the original FD
-            step3Transformation.remove(fd);
-            step3Transformation.add(new FunctionalDependency(leftAttributes, fd.getRight()));
-        }
 
-        return step3Transformation;
+            return step3Transformation;
 
+        } finally {
+            listener.phaseFinished(AnalysisPhase.MINIMAL_BASIS, start);
+        }
     }
 
+    /**
+     * A non-trivial FD X->Y is allowed in 3NF if X is a super key, or every attribute of Y \ X is prime.
+     * Needs one closure per FD. The prime attributes are only computed if some left side isn't a super key,
+     * and then once, from the candidate keys.
+     */
     public static boolean isIn3NF(Relation relation, List<FunctionalDependency> fds) {
-        List<Set<String>> superKeys = RelationKeyUtils.getSuperKeys(relation, fds);
-        List<Set<String>> candidateKeys = RelationKeyUtils.getCandidateKeys(relation, fds);
-        List<FunctionalDependency> nonTrivialFds = fds.stream().filter(fd -> !fd.isTrivialFunctionalDependency(fd)).toList();
-
-        for (FunctionalDependency fd : nonTrivialFds) {
-            boolean isKey = superKeys.stream()
-                    .anyMatch(key -> key.equals(fd.getLeft()));
-            boolean attributesIsContainedInAKey = candidateKeys.stream().anyMatch(o ->
-                    o.containsAll(fd.getRight())
-            );
-            if (!isKey && !attributesIsContainedInAKey) {
-                //FD X->Y
-                // Found a non-trivial FD whose left side isn't a key => Not in BCNF
-                // Found a non-trivial FD whose attribute in Y is contained in a key => Not in 3NF
-                return false;
-            }
-        }
+        return isIn3NF(relation, fds, AnalysisBudget.unlimited()).getValue();
+    }
 
-        return true;
+    /**
+     * Same as {@link #isIn3NF(Relation, List)}, but the search for candidate keys stops once 'budget' runs out.
+     * An incomplete result's value is null, as the prime attributes aren't known then.
+     */
+    public static PartialResult<Boolean> isIn3NF(Relation relation, List<FunctionalDependency> fds, AnalysisBudget budget) {
+        return isIn3NF(relation, fds, () -> RelationKeyUtils.getCandidateKeys(relation, fds, budget));
     }
 
-    public static <T> Predicate<T> distinctByKey(Function<? super T, ?> keyExtractor) {
-        Set<Object> seen = ConcurrentHashMap.newKeySet();
-        return t -> seen.add(keyExtractor.apply(t));
+    /**
+     * Same as {@link #isIn3NF(Relation, List)}, but takes the prime attributes from 'candidateKeys', which must be
+     * the candidate keys of 'relation' under 'fds', instead of searching for them again.
+     */
+    public static boolean isIn3NF(Relation relation, List<FunctionalDependency> fds, List<Set<String>> candidateKeys) {
+        return isIn3NF(relation, fds, () -> PartialResult.complete(candidateKeys)).getValue();
     }
 
+    private static PartialResult<Boolean> isIn3NF(Relation relation, List<FunctionalDependency> fds,
+                                                  Supplier<PartialResult<List<Set<String>>>> candidateKeys) {
+        AnalysisListener listener = AnalysisListener.shared();
+        long start = listener.phaseStarted(AnalysisPhase.THIRD_NF_CHECK);
+        try {
+            ClosureEngine engine = ClosureEngine.prepare(relation.getUniverse(), fds);
+            AttributeUniverse universe = engine.getUniverse();
+            AttributeSet attributes = relation.getAttributeSet();
+            AttributeSet primeAttributes = null;
+
+            for (FunctionalDependency fd : fds) {
+                AttributeSet left = fd.getLeftSet(universe);
+                if (!attributes.containsAll(left) || BCNFUtils.isTrivialIn(relation, universe, fd)) {
+                    continue;
+                }
+                boolean isKey = engine.closureOf(left).containsAll(attributes);
+                if (isKey) {
+                    continue;
+                }
+                if (primeAttributes == null) {
+                    PartialResult<List<Set<String>>> keys = candidateKeys.get();
+                    if (!keys.isComplete()) {
+                        return PartialResult.incomplete(null, keys.getStopReason());
+                    }
+                    primeAttributes = AttributeSet.empty(universe.size());
+                    for (Set<String> key : keys.getValue()) {
+                        primeAttributes.addAll(universe.toAttributeSet(key));
+                    }
+                }
+                AttributeSet nonKeyAttributes = fd.getRightSet(universe).intersection(attributes);
+                nonKeyAttributes.removeAll(left);
+                if (!primeAttributes.containsAll(nonKeyAttributes)) {
+                    //FD X->Y
+                    // Found a non-trivial FD whose left side isn't a key => Not in BCNF
+                    // Found a non-trivial FD with an attribute in Y that is not contained in any key => Not in 3NF
+                    return PartialResult.complete(false);
+                }
+            }
+
+            return PartialResult.complete(true);
+        } finally {
+            listener.phaseFinished(AnalysisPhase.THIRD_NF_CHECK, start);
+        }
+    }
 
 }